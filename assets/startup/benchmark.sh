@@ -0,0 +1,60 @@
+#!/bin/sh
+#
+# Google ranking analysis - Generates a report for google rankings
+# Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+#
+# This program is free software: you can redistribute it and/or modify
+# it under the terms of the GNU General Public License as published by
+# the Free Software Foundation, either version 3 of the License, or
+# (at your option) any later version.
+#
+# This program is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU General Public License for more details.
+#
+# You should have received a copy of the GNU General Public License
+# along with this program. If not, see <http://www.gnu.org/licenses/>.
+#
+
+# compares time-to-report of the plain jar, the AppCDS launcher and the native image
+# on the training fixture (no network access), usage: benchmark.sh [runs]
+
+set -e
+
+RUNS="${1:-20}"
+SCRIPT_DIR="$(cd "$(dirname "$0")" && pwd)"
+TARGET="${GOOGLE_RANKING_HOME:-${SCRIPT_DIR}/../../target}"
+JAR="$(ls "${TARGET}"/google-ranking-*-jar-with-dependencies.jar | head -n 1)"
+NATIVE="${TARGET}/google-ranking"
+JAVA="${JAVA_HOME:+${JAVA_HOME}/bin/}java"
+
+WORK="$(mktemp -d)"
+trap 'rm -rf "${WORK}"' EXIT
+
+ARGS="--query training --pages 1 --domains www.example.org"
+
+measure() {
+    NAME="$1"
+    shift
+    cp -r "${SCRIPT_DIR}/../training" "${WORK}/${NAME}"
+    # warm up file system cache
+    "$@" --base "${WORK}/${NAME}" ${ARGS} > /dev/null
+
+    START="$(date +%s%N)"
+    i=0
+    while [ "${i}" -lt "${RUNS}" ]; do
+        "$@" --base "${WORK}/${NAME}" ${ARGS} > /dev/null
+        i=$((i + 1))
+    done
+    END="$(date +%s%N)"
+    printf '%-10s %8d ms/run\n' "${NAME}" $(((END - START) / RUNS / 1000000))
+}
+
+# shellcheck disable=SC2086
+measure plain "${JAVA}" -jar "${JAR}"
+# shellcheck disable=SC2086
+measure appcds "${SCRIPT_DIR}/google-ranking.sh"
+if [ -x "${NATIVE}" ]; then
+    measure native "${NATIVE}"
+fi
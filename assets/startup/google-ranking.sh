@@ -0,0 +1,38 @@
+#!/bin/sh
+#
+# Google ranking analysis - Generates a report for google rankings
+# Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+#
+# This program is free software: you can redistribute it and/or modify
+# it under the terms of the GNU General Public License as published by
+# the Free Software Foundation, either version 3 of the License, or
+# (at your option) any later version.
+#
+# This program is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU General Public License for more details.
+#
+# You should have received a copy of the GNU General Public License
+# along with this program. If not, see <http://www.gnu.org/licenses/>.
+#
+
+# starts google-ranking with settings tuned for short (cron style) invocations
+# - uses the AppCDS archive created by the 'appcds' build profile (if present)
+# - C1 only and serial GC, a single query never lives long enough to benefit from C2
+# - no nagle for the --serve http api, its headers and body are flushed separately and would wait for delayed acks
+
+set -e
+
+HOME_DIR="${GOOGLE_RANKING_HOME:-$(dirname "$0")/../../target}"
+JAR="$(ls "${HOME_DIR}"/google-ranking-*-jar-with-dependencies.jar | head -n 1)"
+ARCHIVE="${JAR%-jar-with-dependencies.jar}.jsa"
+JAVA="${JAVA_HOME:+${JAVA_HOME}/bin/}java"
+
+SHARE="-Xshare:auto"
+if [ -f "${ARCHIVE}" ]; then
+    SHARE="-XX:SharedArchiveFile=${ARCHIVE} -Xshare:auto"
+fi
+
+# shellcheck disable=SC2086
+exec "${JAVA}" ${SHARE} -XX:TieredStopAtLevel=1 -XX:+UseSerialGC -Dsun.net.httpserver.nodelay=true -jar "${JAR}" "$@"
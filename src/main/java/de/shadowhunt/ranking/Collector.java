@@ -20,19 +20,34 @@ package de.shadowhunt.ranking;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import org.apache.commons.lang3.RegExUtils;
 
+import de.shadowhunt.ranking.catalog.Entry;
 import de.shadowhunt.ranking.data.Page;
 import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.ResultSource;
+import de.shadowhunt.ranking.data.ResultVisitor;
+import de.shadowhunt.ranking.data.Summary;
 
-public class Collector {
+public class Collector implements ResultSource {
 
     private static final FilenameFilter HTML_FILTER = new FilenameFilter() {
 
@@ -54,47 +69,176 @@ public class Collector {
     };
 
     static File calculateDatabaseFolder(final File base, final String query) {
-        final String lowerCase = query.toLowerCase(Locale.GERMAN);
-        final String queryDB = RegExUtils.replaceAll(lowerCase, "\\s+", "_");
+        final String queryDB = calculateDatabaseName(query);
         final File folder = new File(base, queryDB);
         return folder;
     }
 
+    public static String calculateDatabaseName(final String query) {
+        final String lowerCase = query.toLowerCase(Locale.GERMAN);
+        return RegExUtils.replaceAll(lowerCase, "\\s+", "_");
+    }
+
+    public static Date getCreationDate(final File folder) throws IOException {
+        if (folder.exists()) {
+            final Path path = folder.toPath();
+            final BasicFileAttributes fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            final FileTime creationTime = fileAttributes.creationTime();
+            final long millis = creationTime.toMillis();
+            return new Date(millis);
+        }
+        return new Date(0L);
+    }
+
+    // catalog entry of the folder, answers listing and summary without touching the page files
+    @Nullable
+    private final Entry entry;
+
     private final File folder;
 
+    // pages cut short by the last parse (see Page.isTruncated)
+    private final List<Integer> truncated = new ArrayList<>();
+
     public Collector(final File folder) {
+        this(folder, (Entry) null);
+    }
+
+    public Collector(final File folder, @Nullable final Entry entry) {
         this.folder = folder;
+        this.entry = entry;
     }
 
     public Collector(final File base, final String query) {
         this(calculateDatabaseFolder(base, query));
     }
 
+    @Override
+    public void accept(final Set<Summary.Value> required, final ResultVisitor visitor) throws IOException {
+        final List<File> catalogued = listCataloguedPages();
+        final List<File> files = (catalogued == null) ? listFolder() : catalogued;
+        truncated.clear();
+        if (required.isEmpty()) {
+            visitor.begin(Summary.EMPTY);
+        } else if ((entry != null) && (catalogued != null)) {
+            // the Dumper recorded the truncated pages of the catalogued dump with the pages
+            visitor.begin(entry.getSummary().withTruncated(Dumper.listTruncated(Dumper.readMetadata(folder))));
+        } else {
+            // no (matching) catalog entry: the summary needs all pages, so they are parsed once and held in memory
+            final List<SortedSet<Result>> pages = parsePages(files);
+            visitor.begin(summarize(pages));
+            for (final SortedSet<Result> page : pages) {
+                for (final Result result : page) {
+                    visitor.visit(result);
+                }
+            }
+            visitor.end();
+            return;
+        }
+
+        // only one page is held in memory at any time
+        int pageCounter = 1;
+        int rank = 1;
+        for (final File file : files) {
+            final Page page = new Page(file, pageCounter, rank);
+            final SortedSet<Result> pageResult = page.parse();
+            if (page.isTruncated()) {
+                truncated.add(pageCounter);
+            }
+            for (final Result result : pageResult) {
+                visitor.visit(result);
+            }
+            pageCounter++;
+            rank += pageResult.size();
+        }
+        visitor.end();
+    }
+
     private SortedSet<Result> createReport() throws IOException {
         final SortedSet<Result> results = new TreeSet<>();
+        for (final SortedSet<Result> page : parsePages(listPages())) {
+            results.addAll(page);
+        }
+        return results;
+    }
+
+    // pages cut short by the last parse, their later results are missing
+    public List<Integer> getTruncated() {
+        return Collections.unmodifiableList(new ArrayList<>(truncated));
+    }
+
+    // pages named by the catalog entry, null if there is no entry or a page is missing
+    // (e.g. the folder has been replaced by a dump that is not yet in the catalog)
+    @CheckForNull
+    private List<File> listCataloguedPages() {
+        if (entry == null) {
+            return null;
+        }
+
+        final List<File> files = new ArrayList<>(entry.getPageCount());
+        for (int i = 1; i <= entry.getPageCount(); i++) {
+            final File file = new File(folder, String.format("page-%03d.html", i));
+            if (!file.isFile()) {
+                return null;
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    private List<File> listFolder() {
+        if (!folder.isDirectory()) {
+            return Collections.emptyList();
+        }
 
         final File[] files = folder.listFiles(HTML_FILTER);
         if (files == null) {
-            return Collections.emptySortedSet();
+            return Collections.emptyList();
         }
         Arrays.sort(files, NAME_COMPARATOR);
+        return Arrays.asList(files);
+    }
+
+    private List<File> listPages() {
+        final List<File> catalogued = listCataloguedPages();
+        return (catalogued == null) ? listFolder() : catalogued;
+    }
+
+    public SortedSet<Result> parseData() throws IOException {
+        truncated.clear();
+        if (folder.isDirectory()) {
+            return createReport();
+        }
+        return Collections.emptySortedSet();
+    }
 
+    private List<SortedSet<Result>> parsePages(final List<File> files) throws IOException {
+        final List<SortedSet<Result>> pages = new ArrayList<>(files.size());
         int pageCounter = 1;
         int rank = 1;
         for (final File file : files) {
             final Page page = new Page(file, pageCounter, rank);
             final SortedSet<Result> pageResult = page.parse();
-            results.addAll(pageResult);
+            if (page.isTruncated()) {
+                truncated.add(pageCounter);
+            }
+            pages.add(pageResult);
             pageCounter++;
             rank += pageResult.size();
         }
-        return results;
+        return pages;
     }
 
-    public SortedSet<Result> parseData() throws IOException {
-        if (folder.isDirectory()) {
-            return createReport();
+    private Summary summarize(final List<SortedSet<Result>> pages) {
+        int count = 0;
+        int lastPage = 0;
+        int pageCounter = 1;
+        for (final SortedSet<Result> page : pages) {
+            if (!page.isEmpty()) {
+                lastPage = pageCounter;
+            }
+            count += page.size();
+            pageCounter++;
         }
-        return Collections.emptySortedSet();
+        return new Summary(count, lastPage, truncated);
     }
 }
@@ -0,0 +1,150 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import de.shadowhunt.ranking.data.Result;
+
+// when fetching a query can stop before the maximum number of pages, because
+// the tracked hosts have been located (or are known to be out of reach)
+public final class CrawlGoal {
+
+    // progress of a single query, the pages must be offered in order
+    public final class Progress {
+
+        private int foundPage;
+
+        private final Set<String> missing = new HashSet<>(hosts);
+
+        private int organic;
+
+        @CheckForNull
+        private Stop stop;
+
+        Progress() {
+            // only created by the goal
+        }
+
+        // page where the last tracked host has been found (0: not all found)
+        public int getFoundPage() {
+            return foundPage;
+        }
+
+        @CheckForNull
+        public Stop getStop() {
+            return stop;
+        }
+
+        // true: no further page has to be fetched
+        public boolean offer(final int page, final Collection<Result> results) {
+            if (!isEnabled()) {
+                return false;
+            }
+
+            for (final Result result : results) {
+                if (!result.isAdvertisement()) {
+                    missing.remove(result.getUri().getHost());
+                    organic++;
+                }
+            }
+
+            if (missing.isEmpty()) {
+                if (foundPage == 0) {
+                    foundPage = page;
+                }
+                if (found && (page >= (foundPage + contextPages))) {
+                    stop = Stop.FOUND;
+                }
+            } else if ((top > 0) && (organic >= top)) {
+                stop = Stop.NOT_IN_TOP;
+            }
+            return stop != null;
+        }
+    }
+
+    public enum Stop {
+        // all tracked hosts have been found (plus the context pages)
+        FOUND,
+        // not all tracked hosts are within the top results
+        NOT_IN_TOP;
+
+        @CheckForNull
+        public static Stop parse(final String value) {
+            for (final Stop stop : values()) {
+                if (stop.toString().equals(value)) {
+                    return stop;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH).replace('_', '-');
+        }
+    }
+
+    public static final CrawlGoal NONE = new CrawlGoal(Collections.emptySet(), false, 0, 0);
+
+    private final int contextPages;
+
+    private final boolean found;
+
+    private final Set<String> hosts;
+
+    private final int top;
+
+    // found: stop once all hosts are found, and contextPages more have been fetched
+    // top: stop once top organic results have been fetched without finding all hosts (0: never)
+    public CrawlGoal(final Set<String> hosts, final boolean found, final int contextPages, final int top) {
+        this.hosts = Collections.unmodifiableSet(new HashSet<>(hosts));
+        this.found = found;
+        this.contextPages = Math.max(0, contextPages);
+        this.top = Math.max(0, top);
+    }
+
+    // same stop conditions for other tracked hosts
+    public CrawlGoal forHosts(final Set<String> other) {
+        return new CrawlGoal(other, found, contextPages, top);
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    // without tracked hosts there is nothing to look for
+    public boolean isEnabled() {
+        return !hosts.isEmpty() && (found || (top > 0));
+    }
+
+    public Progress start() {
+        return new Progress();
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlGoal [hosts=" + hosts + ", found=" + found + ", contextPages=" + contextPages + ", top=" + top + "]";
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.util.concurrent.TimeUnit;
+
+// point in time after which work has to stop, based on System.nanoTime
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(0L, false);
+
+    // millis <= 0: no deadline
+    public static Deadline after(final long millis) {
+        if (millis <= 0L) {
+            return NONE;
+        }
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), true);
+    }
+
+    private final boolean bounded;
+
+    private final long expiry;
+
+    private Deadline(final long expiry, final boolean bounded) {
+        this.expiry = expiry;
+        this.bounded = bounded;
+    }
+
+    public boolean isExpired() {
+        return remaining() <= 0L;
+    }
+
+    // the earlier of both deadlines
+    public Deadline min(final Deadline other) {
+        if (!bounded) {
+            return other;
+        }
+        if (!other.bounded) {
+            return this;
+        }
+        return ((expiry - other.expiry) <= 0L) ? this : other;
+    }
+
+    // milliseconds until the deadline (Long.MAX_VALUE if unbounded)
+    public long remaining() {
+        if (!bounded) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, TimeUnit.NANOSECONDS.toMillis(expiry - System.nanoTime()));
+    }
+
+    @Override
+    public String toString() {
+        return bounded ? "Deadline [remaining=" + remaining() + "ms]" : "Deadline [none]";
+    }
+}
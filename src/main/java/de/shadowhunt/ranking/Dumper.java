@@ -20,21 +20,50 @@ package de.shadowhunt.ranking;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
 import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.jsoup.Jsoup;
@@ -42,23 +71,177 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.catalog.Entry;
+import de.shadowhunt.ranking.catalog.PageRecord;
+import de.shadowhunt.ranking.catalog.RefreshPlanner;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Page;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.profiling.DumpEvent;
+import de.shadowhunt.ranking.profiling.RequestEvent;
+import de.shadowhunt.ranking.retention.Retention;
+
 public class Dumper {
 
+    public enum Status {
+        // all available pages (up to the maximum) have been fetched
+        COMPLETE,
+        // a timeout stopped fetching, the fetched pages have been published
+        INCOMPLETE,
+        // a timeout stopped fetching before the first page, nothing has been published
+        TIMED_OUT
+    }
+
+    // what the catalog learns about the dumped pages
+    private static final class Dump {
+
+        private final List<PageRecord> pages = new ArrayList<>();
+
+        private final CrawlGoal.Progress progress;
+
+        private final Set<String> ranking = new LinkedHashSet<>();
+
+        private int rank = 1;
+
+        // pages whose response exceeded the maximum size (or could not be parsed completely)
+        private final List<Integer> truncated = new ArrayList<>();
+
+        Dump(final CrawlGoal goal) {
+            progress = goal.start();
+        }
+
+        boolean isDone() {
+            return progress.getStop() != null;
+        }
+    }
+
+    private static final class PageDocument {
+
+        private final Document document;
+
+        private final int page;
+
+        private final boolean truncated;
+
+        PageDocument(final int page, final Document document, final boolean truncated) {
+            this.page = page;
+            this.document = document;
+            this.truncated = truncated;
+        }
+    }
+
+    // aborts requests that would outlive the deadline of their query
+    private static final ScheduledExecutorService ABORTER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "dumper-deadline");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final String CHARSET = StandardCharsets.UTF_8.name();
 
+    public static final String METADATA = "query.properties";
+
     private final File base;
 
-    private final String google;
+    private final Catalog catalog;
+
+    // shared connection pool of the caller, null: a private one per dump
+    @Nullable
+    private final CloseableHttpClient client;
+
+    private final int concurrency;
+
+    // shared executor for predicted pages of the caller, null: a private one per dump
+    @Nullable
+    private final ExecutorService executor;
+
+    private final CrawlGoal goal;
+
+    private final Market market;
 
     private final int maxPages;
 
     private final String query;
 
-    public Dumper(final URI google, final String query, final int maxPages, final File base) {
-        this.google = google.toString();
+    private final Deadline runDeadline;
+
+    private final Timeouts timeouts;
+
+    public Dumper(final Market market, final String query, final int maxPages, final File base) {
+        this(market, query, base, new FetchSettings(maxPages));
+    }
+
+    public Dumper(final Market market, final String query, final File base, final FetchSettings settings) {
+        this(market, query, base, settings, Catalog.shared(base), null, null);
+    }
+
+    // catalog (of base), client and executor are shared by the caller (see RankingEngine),
+    // client and executor are neither configured nor closed here
+    public Dumper(final Market market, final String query, final File base, final FetchSettings settings, final Catalog catalog, @Nullable final CloseableHttpClient client, @Nullable final ExecutorService executor) {
+        this.market = market;
         this.base = base;
         this.query = query;
-        this.maxPages = maxPages;
+        this.maxPages = settings.getMaxPages();
+        this.concurrency = settings.getConcurrency();
+        this.catalog = catalog;
+        this.timeouts = settings.getTimeouts();
+        this.runDeadline = settings.getDeadline();
+        this.goal = settings.getGoal();
+        this.client = client;
+        this.executor = executor;
+    }
+
+    static CloseableHttpClient createClient(final Timeouts timeouts, final int connections) {
+        final HttpClientBuilder builder = HttpClientBuilder.create();
+        final RequestConfig.Builder config = RequestConfig.custom();
+        config.setConnectTimeout(timeouts.getConnect());
+        config.setConnectionRequestTimeout(timeouts.getConnect());
+        config.setSocketTimeout(timeouts.getRead());
+        builder.setDefaultRequestConfig(config.build());
+        // default pool only allows 2 connections per route
+        builder.setMaxConnPerRoute(Math.max(2, connections));
+        builder.setMaxConnTotal(Math.max(20, connections));
+        return builder.build();
+    }
+
+    // where a goal directed crawl stopped early, null if it did not
+    @CheckForNull
+    static String describeStop(final Properties metadata) {
+        final CrawlGoal.Stop stop = CrawlGoal.Stop.parse(metadata.getProperty("stop"));
+        if (stop == CrawlGoal.Stop.FOUND) {
+            return "all tracked hosts found on page " + metadata.getProperty("stop.page");
+        }
+        if (stop == CrawlGoal.Stop.NOT_IN_TOP) {
+            return "not all tracked hosts within the top " + metadata.getProperty("stop.top") + " results";
+        }
+        return null;
+    }
+
+    // pages whose response exceeded the maximum size (or could not be parsed completely) when fetched
+    static List<Integer> listTruncated(final Properties metadata) {
+        final List<Integer> pages = new ArrayList<>();
+        for (final String page : StringUtils.split(metadata.getProperty("truncated", ""), ',')) {
+            final int number = NumberUtils.toInt(page.trim(), -1);
+            if (number > 0) {
+                pages.add(number);
+            }
+        }
+        return pages;
+    }
+
+    // metadata written with the pages, empty if missing or unreadable
+    static Properties readMetadata(final File folder) {
+        final Properties metadata = new Properties();
+        final Path file = folder.toPath().resolve(METADATA);
+        if (Files.isRegularFile(file)) {
+            try (InputStream input = Files.newInputStream(file)) {
+                metadata.load(input);
+            } catch (final IOException e) {
+                // fall back to defaults
+            }
+        }
+        return metadata;
     }
 
     @CheckForNull
@@ -69,43 +252,160 @@ public class Dumper {
         return getNextUri(document);
     }
 
-    public void collectData() throws URISyntaxException, IOException {
-        final File baseFolder = Collector.calculateDatabaseFolder(base, query);
-        if (!baseFolder.mkdirs()) {
-            throw new IOException("can not create " + baseFolder);
+    public Status collectData() throws URISyntaxException, IOException {
+        final Deadline deadline = runDeadline.min(Deadline.after(timeouts.getQuery()));
+        final File folder = Collector.calculateDatabaseFolder(base, query);
+        // pages are collected in a private staging folder (on the same file system) and
+        // published with an atomic rename, so concurrent processes never see partial data
+        final File staging = new File(new File(base, Retention.STAGING), folder.getName() + "-" + UUID.randomUUID());
+        if (!staging.mkdirs()) {
+            throw new IOException("can not create " + staging);
         }
 
-        try (CloseableHttpClient client = createClient()) {
-            Document document = null;
-            for (int i = 1; i <= maxPages; i++) {
-                final URI uri = calculateUri(document);
-                if (uri == null) {
-                    break;
+        try {
+            final Dump dump = new Dump(goal);
+            Status status = Status.COMPLETE;
+            try {
+                collectData(staging, dump, deadline);
+            } catch (final InterruptedIOException e) {
+                // timeouts keep the pages fetched so far
+                if (dump.pages.isEmpty()) {
+                    return Status.TIMED_OUT;
                 }
+                status = Status.INCOMPLETE;
+            }
 
-                document = performRequest(client, uri);
-                if (document == null) {
-                    break;
-                }
+            writeMetadata(staging, status, dump);
+            publish(staging, folder);
+            final List<String> ranking = new ArrayList<>(dump.ranking);
+            catalog.record(new Entry(folder.getName(), query, System.currentTimeMillis(), dump.pages, ranking, Entry.UNKNOWN_VOLATILITY, status == Status.COMPLETE));
+            return status;
+        } finally {
+            FileUtils.deleteQuietly(staging);
+        }
+    }
+
+    // InterruptedIOException: a request timed out or the deadline passed
+    private void collectData(final File baseFolder, final Dump dump, final Deadline deadline) throws URISyntaxException, IOException {
+        if (client != null) {
+            collectData(client, baseFolder, dump, deadline);
+            return;
+        }
+
+        try (CloseableHttpClient own = createClient(timeouts, concurrency)) {
+            collectData(own, baseFolder, dump, deadline);
+        }
+    }
+
+    private void collectData(final CloseableHttpClient http, final File baseFolder, final Dump dump, final Deadline deadline) throws URISyntaxException, IOException {
+        Document document = null;
+        int first = 1;
+        if ((concurrency > 1) && (maxPages > 1)) {
+            final PageDocument last = collectPredicted(http, baseFolder, dump, deadline);
+            if (last == null) {
+                return;
+            }
+            document = last.document;
+            first = last.page + 1;
+        }
+
+        // link following (resumes after the last consistent predicted page)
+        for (int i = first; i <= maxPages; i++) {
+            final URI uri = calculateUri(document);
+            if (uri == null) {
+                break;
+            }
+
+            final PageDocument response = performRequest(http, uri, i, deadline);
+            if (response == null) {
+                break;
+            }
 
-                final File file = new File(baseFolder, String.format("page-%03d.html", i));
-                dumpDocumentToFile(document, file);
+            document = response.document;
+            dumpDocumentToFile(response, getPageFile(baseFolder, i), dump);
+            if (dump.isDone()) {
+                break;
             }
         }
     }
 
-    private CloseableHttpClient createClient() {
-        final HttpClientBuilder builder = HttpClientBuilder.create();
-        return builder.build();
+    // null: nothing left to fetch (no first page or goal reached)
+    @CheckForNull
+    private PageDocument collectPredicted(final CloseableHttpClient http, final File baseFolder, final Dump dump, final Deadline deadline) throws URISyntaxException, IOException {
+        PageDocument last = performRequest(http, createInitialUri(), 1, deadline);
+        if (last == null) {
+            return null;
+        }
+        dumpDocumentToFile(last, getPageFile(baseFolder, 1), dump);
+        if (dump.isDone()) {
+            return null;
+        }
+
+        final URI template = getNextUri(last.document);
+        final int step = getStart(template);
+        if ((template == null) || (step <= 0)) {
+            // single page or no offset parameter to predict from
+            return last;
+        }
+
+        // at most concurrency pages are in flight, a shared executor also serves other dumps
+        final ExecutorService pages = (executor == null) ? Executors.newFixedThreadPool(Math.min(concurrency, maxPages - 1)) : executor;
+        final List<Future<PageDocument>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < concurrency; i++) {
+                submitPredicted(pages, futures, http, template, step, deadline);
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                final int page = i + 2;
+                // the previous page must link exactly to the predicted page,
+                // otherwise it was the last page or the structure differs
+                final URI expected = getNextUri(last.document);
+                if (getStart(expected) != ((page - 1) * step)) {
+                    break;
+                }
+
+                final PageDocument response = futures.get(i).get();
+                submitPredicted(pages, futures, http, template, step, deadline);
+                if (response == null) {
+                    break;
+                }
+                dumpDocumentToFile(response, getPageFile(baseFolder, page), dump);
+                last = response;
+                if (dump.isDone()) {
+                    return null;
+                }
+            }
+            return last;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while fetching " + query, e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("fetching " + query + " failed", cause);
+        } finally {
+            // requests for pages behind the last real page (or the goal) are not needed anymore
+            for (final Future<PageDocument> future : futures) {
+                future.cancel(true);
+            }
+            if (pages != executor) {
+                pages.shutdownNow();
+            }
+        }
     }
 
     private URI createInitialUri() throws URISyntaxException {
-        final URIBuilder builder = new URIBuilder();
-        builder.setScheme("https");
-        builder.setHost("www.google.de");
+        final URIBuilder builder = new URIBuilder(market.getInstance());
         builder.setPath("/search");
         builder.addParameter("client", "firefox-b-d");
         builder.addParameter("q", query);
+        builder.addParameter("hl", market.getLanguage());
+        if (market.hasRegion()) {
+            builder.addParameter("gl", market.getRegion());
+        }
         return builder.build();
     }
 
@@ -114,7 +414,7 @@ public class Dumper {
         // disguise as firefox browser
         request.addHeader("User-Agent", "Mozilla/5.0 (Windows NT 6.1; rv:60.0) Gecko/20100101 Firefox/60.0");
         request.addHeader("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
-        request.addHeader("Accept-Language", "de;q=0.5");
+        request.addHeader("Accept-Language", market.getAcceptLanguage());
         request.addHeader("Accept-Encoding", "gzip, deflate");
         request.addHeader("DNT", "1");
         request.addHeader("Connection", "keep-alive");
@@ -124,12 +424,42 @@ public class Dumper {
         return request;
     }
 
-    private void dumpDocumentToFile(final Document document, final File file) throws IOException {
+    private void dumpDocumentToFile(final PageDocument response, final File file, final Dump dump) throws IOException {
+        final DumpEvent event = new DumpEvent();
+        event.begin();
+        final String content = response.document.toString();
+        final byte[] raw = content.getBytes(StandardCharsets.UTF_8);
         try (OutputStream output = Files.newOutputStream(file.toPath())) {
-            final String dump = document.toString();
-            final byte[] raw = dump.getBytes(StandardCharsets.UTF_8);
             output.write(raw);
         }
+
+        // the stored page is parsed like the Collector parses it later, so the catalog counts match the reports
+        final Page page = new Page(file, dump.pages.size() + 1, dump.rank);
+        final SortedSet<Result> results = page.parse();
+        for (final Result result : results) {
+            if (!result.isAdvertisement() && (dump.ranking.size() < RefreshPlanner.RANKING_SIZE)) {
+                dump.ranking.add(result.getUri().getHost());
+            }
+        }
+        dump.rank += results.size();
+        dump.pages.add(new PageRecord(System.currentTimeMillis(), results.size(), Catalog.hash(raw)));
+        dump.progress.offer(dump.pages.size(), results);
+        if (response.truncated || page.isTruncated()) {
+            dump.truncated.add(dump.pages.size());
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.setBytes(raw.length);
+            event.setPage(dump.pages.size());
+            event.setQuery(query);
+            event.setResults(results.size());
+            event.commit();
+        }
+    }
+
+    private File getPageFile(final File folder, final int page) {
+        return new File(folder, String.format("page-%03d.html", page));
     }
 
     @CheckForNull
@@ -141,23 +471,163 @@ public class Dumper {
             if (StringUtils.isBlank(href)) {
                 continue;
             }
-            return URI.create(google + href);
+            final URI instance = market.getInstance();
+            return instance.resolve(href);
         }
         return null;
     }
 
+    private int getStart(@Nullable final URI uri) {
+        if (uri == null) {
+            return -1;
+        }
+        final List<NameValuePair> parameters = URLEncodedUtils.parse(uri, StandardCharsets.UTF_8);
+        for (final NameValuePair parameter : parameters) {
+            if ("start".equals(parameter.getName())) {
+                return NumberUtils.toInt(parameter.getValue(), -1);
+            }
+        }
+        return -1;
+    }
+
+    // the response body is cut off after the maximum page size, the rest is never read
     @CheckForNull
-    private Document performRequest(final CloseableHttpClient client, final URI uri) throws IOException {
+    private PageDocument performRequest(final CloseableHttpClient http, final URI uri, final int page, final Deadline deadline) throws IOException {
+        final long remaining = deadline.remaining();
+        if (remaining <= 0L) {
+            throw new InterruptedIOException("deadline exceeded before requesting " + uri);
+        }
+
+        final RequestEvent event = new RequestEvent();
+        event.begin();
         final HttpGet request = createRequest(uri);
-        try (CloseableHttpResponse response = client.execute(request)) {
+        // socket timeouts only bound inactivity, a trickling response is aborted at the deadline
+        final ScheduledFuture<?> abort = (remaining == Long.MAX_VALUE) ? null : ABORTER.schedule(request::abort, remaining, TimeUnit.MILLISECONDS);
+        try (CloseableHttpResponse response = http.execute(request)) {
             final StatusLine statusLine = response.getStatusLine();
+            event.setStatus(statusLine.getStatusCode());
             if (statusLine.getStatusCode() == HttpStatus.SC_OK) {
                 final HttpEntity entity = response.getEntity();
-                try (InputStream content = entity.getContent()) {
-                    return Jsoup.parse(content, CHARSET, google);
+                try (InputStream body = entity.getContent()) {
+                    // jsoup closes the stream, which would read the remaining body to reuse the connection
+                    final CountingInputStream content = new CountingInputStream(new BoundedInputStream(new CloseShieldInputStream(body), Page.MAX_SIZE + 1));
+                    final Document document = Jsoup.parse(content, CHARSET, market.getInstance().toString());
+                    final boolean truncated = content.getByteCount() > Page.MAX_SIZE;
+                    if (truncated) {
+                        request.abort();
+                    }
+                    event.setBytes(content.getByteCount());
+                    return new PageDocument(page, document, truncated);
                 }
             }
+        } catch (final IOException e) {
+            if ((e instanceof InterruptedIOException) || !deadline.isExpired()) {
+                throw e;
+            }
+            final InterruptedIOException timeout = new InterruptedIOException("deadline exceeded while requesting " + uri);
+            timeout.initCause(e);
+            throw timeout;
+        } finally {
+            if (abort != null) {
+                abort.cancel(false);
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.setMarket(market.toString());
+                event.setPage(page);
+                event.setQuery(query);
+                event.setUri(uri.toString());
+                event.commit();
+            }
         }
         return null;
     }
+
+    // the query folder is a symbolic link to the current version, replacing the link is a single
+    // atomic rename, so readers always find either the previous or the new data, never nothing;
+    // the replaced version is only renamed, archiving and deleting it is left to the Retention
+    private void publish(final File staging, final File folder) throws IOException {
+        final String name = folder.getName() + "@" + System.currentTimeMillis() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        final Path versions = Files.createDirectories(base.toPath().resolve(Retention.VERSIONS));
+        final Path version = Files.move(staging.toPath(), versions.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+
+        final Path target = folder.toPath();
+        final Path link = target.resolveSibling("." + name);
+        try {
+            Files.createSymbolicLink(link, base.toPath().relativize(version));
+        } catch (final UnsupportedOperationException | FileSystemException e) {
+            // no symbolic links on this file system
+            publish(version, target, name);
+            return;
+        }
+
+        try {
+            final Path previous = Files.isSymbolicLink(target) ? base.toPath().resolve(Files.readSymbolicLink(target)) : null;
+            if ((previous == null) && Files.isDirectory(target)) {
+                // folder from a version without links, can not be replaced atomically
+                retire(target, name);
+            }
+            Files.move(link, target, StandardCopyOption.ATOMIC_MOVE);
+            if (previous != null) {
+                retire(previous, previous.getFileName().toString());
+            }
+        } finally {
+            Files.deleteIfExists(link);
+        }
+    }
+
+    private void publish(final Path version, final Path target, final String name) throws IOException {
+        retire(target, name);
+        try {
+            Files.move(version, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final FileSystemException e) {
+            // a concurrent publisher was faster, its data is as current as ours
+            FileUtils.deleteQuietly(version.toFile());
+            if (!Files.isDirectory(target)) {
+                throw e;
+            }
+        }
+    }
+
+    private void retire(final Path version, final String name) throws IOException {
+        final Path retired = Files.createDirectories(base.toPath().resolve(Retention.RETIRED)).resolve(name);
+        try {
+            Files.move(version, retired, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final NoSuchFileException e) {
+            // no previous data (or already retired by a concurrent publisher)
+        }
+    }
+
+    // predicts the next page from the offset of the first next link, nothing behind the maximum
+    private void submitPredicted(final ExecutorService pages, final List<Future<PageDocument>> futures, final CloseableHttpClient http, final URI template, final int step, final Deadline deadline) throws URISyntaxException {
+        final int page = futures.size() + 2;
+        if (page > maxPages) {
+            return;
+        }
+        final URI uri = new URIBuilder(template).setParameter("start", Integer.toString((page - 1) * step)).build();
+        futures.add(pages.submit(() -> performRequest(http, uri, page, deadline)));
+    }
+
+    private void writeMetadata(final File folder, final Status status, final Dump dump) throws IOException {
+        final Properties metadata = new Properties();
+        metadata.setProperty("market", market.toString());
+        metadata.setProperty("pages", Integer.toString(maxPages));
+        metadata.setProperty("query", query);
+        metadata.setProperty("status", status.name().toLowerCase(Locale.ENGLISH));
+        if (!dump.truncated.isEmpty()) {
+            metadata.setProperty("truncated", StringUtils.join(dump.truncated, ','));
+        }
+        final CrawlGoal.Stop stop = dump.progress.getStop();
+        if (stop != null) {
+            metadata.setProperty("stop", stop.toString());
+            if (stop == CrawlGoal.Stop.FOUND) {
+                metadata.setProperty("stop.page", Integer.toString(dump.progress.getFoundPage()));
+            } else {
+                metadata.setProperty("stop.top", Integer.toString(goal.getTop()));
+            }
+        }
+        try (OutputStream output = Files.newOutputStream(new File(folder, METADATA).toPath())) {
+            metadata.store(output, null);
+        }
+    }
 }
@@ -0,0 +1,81 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.util.Set;
+
+// how the pages of one query are fetched, shared by all queries of a run
+public final class FetchSettings {
+
+    private final int concurrency;
+
+    private final Deadline deadline;
+
+    private final CrawlGoal goal;
+
+    private final int maxPages;
+
+    private final Timeouts timeouts;
+
+    // one page after the other, default timeouts, no deadline, always up to maxPages
+    public FetchSettings(final int maxPages) {
+        this(maxPages, 1, Timeouts.DEFAULT, Deadline.NONE, CrawlGoal.NONE);
+    }
+
+    public FetchSettings(final int maxPages, final int concurrency, final Timeouts timeouts, final Deadline deadline, final CrawlGoal goal) {
+        this.maxPages = maxPages;
+        this.concurrency = Math.max(1, concurrency);
+        this.timeouts = timeouts;
+        this.deadline = deadline;
+        this.goal = goal;
+    }
+
+    // same settings, the goal looks for other tracked hosts
+    public FetchSettings forHosts(final Set<String> hosts) {
+        return new FetchSettings(maxPages, concurrency, timeouts, deadline, goal.forHosts(hosts));
+    }
+
+    // pages fetched concurrently (> 1: page URIs are predicted from the offset parameter of the first
+    // next link and fetched in parallel, falling back to link following on mismatch)
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    // deadline of the whole run, fetching stops at the query timeout or the deadline, whatever comes first
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    // results are evaluated as each page arrives, fetching stops once the goal is reached
+    public CrawlGoal getGoal() {
+        return goal;
+    }
+
+    public int getMaxPages() {
+        return maxPages;
+    }
+
+    public Timeouts getTimeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public String toString() {
+        return "FetchSettings [maxPages=" + maxPages + ", concurrency=" + concurrency + ", timeouts=" + timeouts + "]";
+    }
+}
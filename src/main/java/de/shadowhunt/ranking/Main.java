@@ -17,29 +17,46 @@
  */
 package de.shadowhunt.ranking;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Date;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
-import org.apache.commons.io.FileUtils;
 import org.slf4j.impl.SimpleLogger;
 
-import de.shadowhunt.ranking.data.Result;
-import de.shadowhunt.ranking.report.HeaderReporter;
-import de.shadowhunt.ranking.report.PageReporter;
-import de.shadowhunt.ranking.report.StatisticReporter;
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.catalog.Entry;
+import de.shadowhunt.ranking.catalog.RefreshPlanner;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.history.History;
+import de.shadowhunt.ranking.history.QuerySketch;
+import de.shadowhunt.ranking.index.IndexLoader;
+import de.shadowhunt.ranking.index.IndexServer;
+import de.shadowhunt.ranking.profiling.FlightRecording;
+import de.shadowhunt.ranking.queue.WorkQueue;
+import de.shadowhunt.ranking.queue.Worker;
+import de.shadowhunt.ranking.report.CooccurrenceReporter;
+import de.shadowhunt.ranking.report.HistoryReporter;
+import de.shadowhunt.ranking.report.ReportWriter;
+import de.shadowhunt.ranking.retention.Retention;
+import de.shadowhunt.ranking.retention.RetentionPolicy;
 import joptsimple.ArgumentAcceptingOptionSpec;
 import joptsimple.BuiltinHelpFormatter;
 import joptsimple.OptionException;
@@ -48,7 +65,7 @@ import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import joptsimple.OptionSpecBuilder;
 
-public class Main {
+public class Main implements Closeable {
 
     private static OptionSpec<File> createBaseOption(final OptionParser parser) {
         final List<String> options = Arrays.asList("base", "b");
@@ -58,6 +75,38 @@ public class Main {
         return optionSpec.ofType(File.class).defaultsTo(new File("."));
     }
 
+    private static OptionSpec<Integer> createArchiveDaysOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("archive-days");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "retention: delete archived versions older than this (0: no age limit)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("days");
+        return optionSpec.ofType(Integer.class).defaultsTo(90);
+    }
+
+    private static OptionSpec<Integer> createBudgetOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("budget");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "also refresh the most overdue queries of the catalog, limited to this many page requests");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("requests");
+        return optionSpec.ofType(Integer.class);
+    }
+
+    private static OptionSpec<Integer> createConnectTimeoutOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("connect-timeout");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "timeout for establishing a connection");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class).defaultsTo(10);
+    }
+
+    private static OptionSpec<Integer> createCooccurrenceOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("cooccurrence");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "analyze which hosts appear together across all catalogued queries (number of top hosts to pair)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withOptionalArg();
+        optionSpec = optionSpec.describedAs("hosts");
+        return optionSpec.ofType(Integer.class).defaultsTo(100);
+    }
+
     private static OptionSpec<String> createDomainsOption(final OptionParser parser) {
         final List<String> options = Arrays.asList("domains", "d");
         final OptionSpecBuilder builder = parser.acceptsAll(options, "list of domains");
@@ -66,6 +115,19 @@ public class Main {
         return optionSpec.ofType(String.class).withValuesSeparatedBy(",");
     }
 
+    private static OptionSpec<Void> createEnqueueOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("enqueue", "e");
+        return parser.acceptsAll(options, "add queries to the shared work queue in base instead of running them");
+    }
+
+    private static OptionSpec<Integer> createFlightRecorderOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("flight-recorder");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "keep a rolling flight recording, dumped into base if the run takes longer (0: always)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class);
+    }
+
     private static OptionSpec<URI> createGoogleOption(final OptionParser parser) {
         final List<String> options = Arrays.asList("google", "g");
         final OptionSpecBuilder builder = parser.acceptsAll(options, "google instance to query");
@@ -81,6 +143,56 @@ public class Main {
         return builder.forHelp();
     }
 
+    private static OptionSpec<Void> createHistoryOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("history");
+        return parser.acceptsAll(options, "summarize the rank history of all hosts over all queries in base");
+    }
+
+    private static OptionSpec<Integer> createKeepOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("keep");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "retention: archived versions kept per query");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("versions");
+        return optionSpec.ofType(Integer.class).defaultsTo(10);
+    }
+
+    private static OptionSpec<Integer> createLeaseOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("lease", "l");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "seconds after which a query claimed by a silent worker is reclaimed");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class).defaultsTo(300);
+    }
+
+    private static OptionSpec<Void> createListOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("list");
+        return parser.acceptsAll(options, "list the queries known in base with their age (from the catalog)");
+    }
+
+    private static OptionSpec<Integer> createMaxRefreshOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("max-refresh");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "refresh interval of the most stable queries");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("hours");
+        return optionSpec.ofType(Integer.class).defaultsTo(72);
+    }
+
+    private static OptionSpec<Integer> createMinRefreshOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("min-refresh");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "refresh interval of the most volatile (and new) queries");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("hours");
+        return optionSpec.ofType(Integer.class).defaultsTo(6);
+    }
+
+    private static OptionSpec<String> createMarketsOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("markets", "m");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "list of markets to query in parallel (<language>[-<region>]@<instance>)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("markets");
+        return optionSpec.ofType(String.class).withValuesSeparatedBy(",");
+    }
+
     private static OptionSpec<Integer> createPagesOption(final OptionParser parser) {
         final List<String> options = Arrays.asList("pages", "p");
         final OptionSpecBuilder builder = parser.acceptsAll(options, "maximum number of pages");
@@ -97,12 +209,113 @@ public class Main {
         return parser;
     }
 
+    private static OptionSpec<Integer> createParallelPagesOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("parallel-pages");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "number of result pages fetched concurrently per query (1: follow next links)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("pages");
+        return optionSpec.ofType(Integer.class).defaultsTo(1);
+    }
+
     private static OptionSpec<String> createQueryOption(final OptionParser parser) {
         final List<String> options = Arrays.asList("query", "q");
-        final OptionSpecBuilder builder = parser.acceptsAll(options, "google query");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "google query (can be repeated)");
         ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
         optionSpec = optionSpec.describedAs("query");
-        return optionSpec.ofType(String.class).required();
+        return optionSpec.ofType(String.class);
+    }
+
+    private static OptionSpec<Integer> createQueryTimeoutOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("query-timeout");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "time budget for all pages of one query, partial results are kept (0: unlimited)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class).defaultsTo(300);
+    }
+
+    private static OptionSpec<Integer> createReadTimeoutOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("read-timeout");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "maximum time without response data");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class).defaultsTo(30);
+    }
+
+    private static OptionSpec<Void> createRetentionOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("retention");
+        return parser.acceptsAll(options, "archive replaced versions and clean up base (in the background while queries run)");
+    }
+
+    private static OptionSpec<Integer> createRetentionRateOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("retention-rate");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "retention (and discarding replaced versions after fetches): maximum I/O (0: unlimited)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("MiB/s");
+        return optionSpec.ofType(Integer.class).defaultsTo(10);
+    }
+
+    private static OptionSpec<Integer> createRunTimeoutOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("run-timeout");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "deadline for the whole run, remaining queries are skipped (0: unlimited)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("minutes");
+        return optionSpec.ofType(Integer.class).defaultsTo(0);
+    }
+
+    private static OptionSpec<Integer> createServeOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("serve");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "answer host and query lookups over http/json on localhost from an in-memory index of base");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("port");
+        return optionSpec.ofType(Integer.class);
+    }
+
+    private static OptionSpec<Integer> createServeRefreshOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("serve-refresh");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "serve: reload refreshed query folders every");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("seconds");
+        return optionSpec.ofType(Integer.class).defaultsTo(10);
+    }
+
+    private static OptionSpec<Integer> createStopBelowOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("stop-below");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "stop fetching once this many organic results did not contain all domains (0: never)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("results");
+        return optionSpec.ofType(Integer.class).defaultsTo(0);
+    }
+
+    private static OptionSpec<Integer> createStopWhenFoundOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("stop-when-found");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "stop fetching once all domains are found and this many additional pages for context have been fetched");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("pages");
+        return optionSpec.ofType(Integer.class).defaultsTo(0);
+    }
+
+    private static OptionSpec<Integer> createThreadsOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("threads", "t");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "maximum number of markets fetched concurrently");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("threads");
+        return optionSpec.ofType(Integer.class).defaultsTo(4);
+    }
+
+    private static OptionSpec<String> createWorkerOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("worker");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "process queries from the shared work queue in base until it is empty");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withRequiredArg();
+        optionSpec = optionSpec.describedAs("id");
+        return optionSpec.ofType(String.class);
+    }
+
+    private static OptionSpec<Long> createWatchOption(final OptionParser parser) {
+        final List<String> options = Arrays.asList("watch");
+        final OptionSpecBuilder builder = parser.acceptsAll(options, "keep reports in base up to date when pages change (debounce in milliseconds)");
+        ArgumentAcceptingOptionSpec<String> optionSpec = builder.withOptionalArg();
+        optionSpec = optionSpec.describedAs("debounce");
+        return optionSpec.ofType(Long.class).defaultsTo(2000L);
     }
 
     private static OptionSpec<File> createWireLogOption(final OptionParser parser) {
@@ -115,13 +328,39 @@ public class Main {
 
     public static void main(final String[] args) throws Exception {
         final OptionParser parser = createParser();
+        final OptionSpec<Integer> archiveDaysOption = createArchiveDaysOption(parser);
         final OptionSpec<File> baseOption = createBaseOption(parser);
+        final OptionSpec<Integer> budgetOption = createBudgetOption(parser);
+        final OptionSpec<Integer> connectTimeoutOption = createConnectTimeoutOption(parser);
+        final OptionSpec<Integer> cooccurrenceOption = createCooccurrenceOption(parser);
         final OptionSpec<String> domainsOption = createDomainsOption(parser);
+        final OptionSpec<Void> enqueueOption = createEnqueueOption(parser);
+        final OptionSpec<Integer> flightRecorderOption = createFlightRecorderOption(parser);
         final OptionSpec<URI> googleOption = createGoogleOption(parser);
         final OptionSpec<Void> helpOption = createHelpOption(parser);
+        final OptionSpec<Void> historyOption = createHistoryOption(parser);
+        final OptionSpec<Integer> keepOption = createKeepOption(parser);
+        final OptionSpec<Integer> leaseOption = createLeaseOption(parser);
+        final OptionSpec<Void> listOption = createListOption(parser);
+        final OptionSpec<String> marketsOption = createMarketsOption(parser);
+        final OptionSpec<Integer> maxRefreshOption = createMaxRefreshOption(parser);
+        final OptionSpec<Integer> minRefreshOption = createMinRefreshOption(parser);
         final OptionSpec<Integer> pagesOption = createPagesOption(parser);
+        final OptionSpec<Integer> parallelPagesOption = createParallelPagesOption(parser);
         final OptionSpec<String> queryOption = createQueryOption(parser);
+        final OptionSpec<Integer> queryTimeoutOption = createQueryTimeoutOption(parser);
+        final OptionSpec<Integer> readTimeoutOption = createReadTimeoutOption(parser);
+        final OptionSpec<Void> retentionOption = createRetentionOption(parser);
+        final OptionSpec<Integer> retentionRateOption = createRetentionRateOption(parser);
+        final OptionSpec<Integer> runTimeoutOption = createRunTimeoutOption(parser);
+        final OptionSpec<Integer> serveOption = createServeOption(parser);
+        final OptionSpec<Integer> serveRefreshOption = createServeRefreshOption(parser);
+        final OptionSpec<Integer> stopBelowOption = createStopBelowOption(parser);
+        final OptionSpec<Integer> stopWhenFoundOption = createStopWhenFoundOption(parser);
+        final OptionSpec<Integer> threadsOption = createThreadsOption(parser);
+        final OptionSpec<Long> watchOption = createWatchOption(parser);
         final OptionSpec<File> wireLogOption = createWireLogOption(parser);
+        final OptionSpec<String> workerOption = createWorkerOption(parser);
 
         final OptionSet options;
         try {
@@ -136,6 +375,12 @@ public class Main {
             return;
         }
 
+        final Set<String> queries = new LinkedHashSet<>(queryOption.values(options));
+        if (queries.isEmpty() && !options.has(budgetOption) && !options.has(cooccurrenceOption) && !options.has(historyOption) && !options.has(listOption) && !options.has(retentionOption) && !options.has(serveOption) && !options.has(workerOption) && !options.has(watchOption)) {
+            parser.printHelpOn(System.err);
+            return;
+        }
+
         final File log = options.valueOf(wireLogOption);
         if (log != null) {
             System.setProperty(SimpleLogger.DATE_TIME_FORMAT_KEY, "[yyyy-MM-dd HH:mm:ss.SSS]");
@@ -153,67 +398,307 @@ public class Main {
         final List<String> domains = domainsOption.values(options);
         final URI google = googleOption.value(options);
         final int pages = pagesOption.value(options);
-        final String query = queryOption.value(options);
+        final int parallelPages = parallelPagesOption.value(options);
+        final int threads = threadsOption.value(options);
+
+        final List<Market> markets = new ArrayList<>();
+        for (final String value : marketsOption.values(options)) {
+            // a market given twice is only fetched and reported once
+            final Market market = Market.parse(value);
+            if (!markets.contains(market)) {
+                markets.add(market);
+            }
+        }
+        if (markets.isEmpty()) {
+            markets.add(new Market(google, Market.DEFAULT_LANGUAGE, null));
+        }
+
+        final long minRefresh = TimeUnit.HOURS.toMillis(minRefreshOption.value(options));
+        final long maxRefresh = TimeUnit.HOURS.toMillis(maxRefreshOption.value(options));
+        final RefreshPlanner planner = new RefreshPlanner(minRefresh, maxRefresh);
+
+        final int connectTimeout = (int) TimeUnit.SECONDS.toMillis(connectTimeoutOption.value(options));
+        final int readTimeout = (int) TimeUnit.SECONDS.toMillis(readTimeoutOption.value(options));
+        final long queryTimeout = TimeUnit.SECONDS.toMillis(queryTimeoutOption.value(options));
+        final Timeouts timeouts = new Timeouts(connectTimeout, readTimeout, queryTimeout);
+        final Deadline deadline = Deadline.after(TimeUnit.MINUTES.toMillis(runTimeoutOption.value(options)));
+
+        final Set<String> hosts = new HashSet<>(domains);
+        final CrawlGoal goal = new CrawlGoal(hosts, options.has(stopWhenFoundOption), stopWhenFoundOption.value(options), stopBelowOption.value(options));
+        final FetchSettings settings = new FetchSettings(pages, parallelPages, timeouts, deadline, goal);
+
+        // without --retention the engine deletes the replaced versions once they are outdated (they are not archived)
+        final long retentionRate = retentionRateOption.value(options) * 1024L * 1024L;
+        final RetentionPolicy discard = options.has(retentionOption) ? null : RetentionPolicy.discard(RetentionPolicy.RETIRED_AGE, RetentionPolicy.STAGING_AGE, retentionRate);
+
+        try (Main main = new Main(markets, base, hosts, threads, settings, planner, discard)) {
+            if (options.has(listOption)) {
+                main.list();
+                return;
+            }
+
+            FlightRecording recording = null;
+            if (options.has(flightRecorderOption)) {
+                final long threshold = TimeUnit.SECONDS.toMillis(flightRecorderOption.value(options));
+                recording = FlightRecording.start(base, threshold);
+                if (recording == null) {
+                    System.err.println("flight recorder is not available in this jvm (requires java 11 or later)");
+                }
+            }
+            try {
+                if (options.has(budgetOption)) {
+                    queries.addAll(main.plan(budgetOption.value(options)));
+                }
+
+                // retention runs next to the queries on its own (low priority) thread
+                final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "retention");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+                Future<?> retention = null;
+                if (options.has(retentionOption)) {
+                    final long archiveAge = TimeUnit.DAYS.toMillis(archiveDaysOption.value(options));
+                    final RetentionPolicy policy = new RetentionPolicy(keepOption.value(options), archiveAge, RetentionPolicy.STAGING_AGE, retentionRate);
+                    retention = background.submit(() -> {
+                        main.retain(policy);
+                        return null;
+                    });
+                }
 
-        final Main main = new Main(google, query, pages, base, new HashSet<>(domains));
-        main.run();
+                if (options.has(enqueueOption) || options.has(workerOption)) {
+                    final long lease = TimeUnit.SECONDS.toMillis(leaseOption.value(options));
+                    final WorkQueue queue = new WorkQueue(base, lease);
+                    for (final String query : queries) {
+                        queue.enqueue(query);
+                    }
+
+                    final String id = options.valueOf(workerOption);
+                    if (id != null) {
+                        final Worker worker = new Worker(id, queue, main::run, deadline);
+                        worker.run();
+                    }
+                } else {
+                    for (final String query : queries) {
+                        main.run(query);
+                    }
+                }
+
+                try {
+                    if (retention != null) {
+                        retention.get();
+                    }
+                } finally {
+                    background.shutdownNow();
+                }
+
+                if (options.has(cooccurrenceOption)) {
+                    main.cooccurrence(cooccurrenceOption.value(options));
+                }
+
+                if (options.has(historyOption)) {
+                    main.history();
+                }
+            } finally {
+                if (recording != null) {
+                    recording.close();
+                }
+            }
+
+            IndexServer server = null;
+            if (options.has(serveOption)) {
+                final long refresh = TimeUnit.SECONDS.toMillis(serveRefreshOption.value(options));
+                server = main.serve(serveOption.value(options), refresh);
+            }
+            try {
+                if (options.has(watchOption)) {
+                    main.watch(watchOption.value(options));
+                } else if (server != null) {
+                    Thread.currentThread().join();
+                }
+            } finally {
+                if (server != null) {
+                    server.close();
+                }
+            }
+        }
+    }
+
+    // folders that could not be (re)loaded keep serving their previous results
+    private static void printFailures(final IndexLoader.Refresh refresh) {
+        for (final Map.Entry<File, Exception> failure : refresh.getFailures().entrySet()) {
+            System.err.println("loading " + failure.getKey() + " failed: " + failure.getValue());
+        }
     }
 
     private final File base;
 
-    private final URI google;
+    // discard pass of the engine after it published a dump, null: replaced versions are archived by --retention
+    @CheckForNull
+    private final RetentionPolicy discard;
+
+    // only created for the modes that rank queries
+    @CheckForNull
+    private RankingEngine engine;
 
     private final Set<String> hosts;
 
-    private final int maxPages;
+    private final List<Market> markets;
+
+    private final RefreshPlanner planner;
 
-    private final String query;
+    private final FetchSettings settings;
 
-    public Main(final URI google, final String query, final int maxPages, final File base, final Set<String> hosts) {
-        this.google = google;
+    private final int threads;
+
+    // queries are ranked by the engine, all other modes work on the stored pages below base
+    public Main(final List<Market> markets, final File base, final Set<String> hosts, final int threads, final FetchSettings settings, final RefreshPlanner planner, @Nullable final RetentionPolicy discard) {
+        this.markets = markets;
         this.base = base;
-        this.query = query;
-        this.maxPages = maxPages;
         this.hosts = hosts;
+        this.threads = threads;
+        this.settings = settings;
+        this.planner = planner;
+        this.discard = discard;
     }
 
-    private Date getCreationDate(final File folder) throws IOException {
-        if (folder.exists()) {
-            final Path path = folder.toPath();
-            final BasicFileAttributes fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
-            final FileTime creationTime = fileAttributes.creationTime();
-            final long millis = creationTime.toMillis();
-            return new Date(millis);
+    @Override
+    public synchronized void close() throws IOException {
+        if (engine != null) {
+            engine.close();
         }
-        return new Date(0L);
     }
 
-    private boolean isDatabaseCurrent(final File folder) throws IOException {
-        final Date creationDate = getCreationDate(folder);
-        final Date now = new Date();
-        final long age = (now.getTime() - creationDate.getTime());
-        return age < (12 * 60 * 60 * 1000); // 12h
+    private void cooccurrence(final int topHosts) throws Exception {
+        for (final Market market : markets) {
+            final File marketBase = getMarketBase(market);
+            final CooccurrenceReporter reporter = new CooccurrenceReporter(hosts, topHosts);
+
+            // only stored pages are read, the queries are parsed in parallel
+            final List<Future<?>> futures = new ArrayList<>();
+            final ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                for (final Entry entry : Catalog.shared(marketBase).list()) {
+                    final File folder = new File(marketBase, entry.getFolder());
+                    futures.add(executor.submit(() -> {
+                        reporter.collect(new Collector(folder, entry));
+                        return null;
+                    }));
+                }
+
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            try (ReportWriter writer = Report.open(new File(marketBase, "cooccurrence.txt"))) {
+                reporter.generate(writer);
+            }
+        }
     }
 
-    private void run() throws Exception {
-        final File folder = Collector.calculateDatabaseFolder(base, query);
-        if (!isDatabaseCurrent(folder)) {
-            // clean old database
-            FileUtils.deleteDirectory(folder);
-            final Dumper dumper = new Dumper(google, query, maxPages, base);
-            dumper.collectData();
+    // the connection pool and executors are only set up once a query is ranked
+    private synchronized RankingEngine getEngine() {
+        if (engine == null) {
+            engine = new RankingEngine(markets, base, hosts, threads, settings, planner, discard);
         }
+        return engine;
+    }
 
-        final Collector collector = new Collector(base, query);
-        final SortedSet<Result> data = collector.parseData();
+    private File getMarketBase(final Market market) {
+        return RankingEngine.getMarketBase(base, markets, market);
+    }
+
+    private void history() throws IOException {
+        for (final Market market : markets) {
+            final File marketBase = getMarketBase(market);
+            final QuerySketch merged = History.merge(marketBase);
+            try (ReportWriter writer = Report.open(new File(marketBase, "history.txt"))) {
+                HistoryReporter.generate(writer, merged, hosts);
+            }
+        }
+    }
 
-        final File report = new File(folder, "report.txt");
-        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(report.toPath()), "UTF-8"))) {
-            final Date date = getCreationDate(folder);
-            new HeaderReporter(google, query, maxPages, date, hosts, data).generate(writer);
-            new PageReporter(hosts, data).generate(writer);
-            new StatisticReporter(hosts, data).generate(writer);
+    private void list() throws IOException {
+        final long now = System.currentTimeMillis();
+        for (final Market market : markets) {
+            if (markets.size() > 1) {
+                System.out.println(market);
+            }
+            for (final Entry entry : Catalog.shared(getMarketBase(market)).list()) {
+                final String state = planner.isDue(entry, now) ? "due  " : "fresh";
+                final long age = TimeUnit.MILLISECONDS.toMinutes(entry.getAge(now));
+                final long interval = TimeUnit.MILLISECONDS.toMinutes(planner.getInterval(entry));
+                final String volatility = entry.hasVolatility() ? String.format("%.3f", entry.getVolatility()) : "    -";
+                System.out.printf("%s %6d/%6d min %s %3d pages %5d results  %s%n", state, age, interval, volatility, entry.getPageCount(), entry.getResultCount(), entry.getQuery());
+            }
         }
     }
 
+    // queries of all markets that are due, most overdue per page request first, within budget page requests
+    private List<String> plan(final int budget) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        for (final Market market : markets) {
+            entries.addAll(Catalog.shared(getMarketBase(market)).list());
+        }
+        return planner.plan(entries, System.currentTimeMillis(), budget, markets.size());
+    }
+
+    private void retain(final RetentionPolicy policy) throws IOException {
+        for (final Market market : markets) {
+            final File marketBase = getMarketBase(market);
+            final Retention.Result result = new Retention(marketBase.toPath(), policy).call();
+            if (policy.isArchive() || (result.getDeletedFiles() > 0)) {
+                System.out.println("retention " + marketBase + ": " + result);
+            }
+        }
+    }
+
+    private void run(final String query) throws Exception {
+        if (settings.getDeadline().isExpired()) {
+            System.err.println("'" + query + "': skipped, run deadline exceeded");
+            return;
+        }
+
+        final RankingResponse response;
+        try {
+            response = getEngine().rank(query).get();
+        } catch (final ExecutionException e) {
+            final Throwable cause = (e.getCause() instanceof UncheckedIOException) ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+
+        for (final RankingResult result : response.getResults()) {
+            if (result.getStatus() == Dumper.Status.INCOMPLETE) {
+                System.err.println("'" + query + "' (" + result.getMarket() + "): timeout, keeping partial results");
+            } else if (result.getStatus() == Dumper.Status.TIMED_OUT) {
+                System.err.println("'" + query + "' (" + result.getMarket() + "): timeout, keeping previous results");
+            }
+        }
+    }
+
+    private IndexServer serve(final int port, final long refresh) throws IOException {
+        final Map<Market, File> bases = new LinkedHashMap<>();
+        for (final Market market : markets) {
+            bases.put(market, getMarketBase(market));
+        }
+
+        final IndexLoader loader = new IndexLoader(bases);
+        printFailures(loader.refresh());
+        final IndexServer server = new IndexServer(port, loader, refresh, threads, Main::printFailures);
+        System.out.println("serving " + loader.getIndex().getQueries() + " queries on " + server.getUri());
+        return server;
+    }
+
+    private void watch(final long debounce) throws IOException, InterruptedException {
+        final Market market = markets.get(0);
+        final Watcher watcher = new Watcher(base, new Report(hosts), market, settings.getMaxPages(), debounce);
+        watcher.run();
+    }
 }
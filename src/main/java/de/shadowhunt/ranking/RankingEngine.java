@@ -0,0 +1,514 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.catalog.Entry;
+import de.shadowhunt.ranking.catalog.RefreshPlanner;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.SortedResultSource;
+import de.shadowhunt.ranking.profiling.QueryEvent;
+import de.shadowhunt.ranking.report.AbstractReporter;
+import de.shadowhunt.ranking.report.MarketReporter;
+import de.shadowhunt.ranking.report.ReportWriter;
+import de.shadowhunt.ranking.retention.Retention;
+import de.shadowhunt.ranking.retention.RetentionPolicy;
+
+// thread-safe entry point to rank queries from within another application: all requests share one http
+// connection pool and the executors, and identical requests that arrive while one of them is running share
+// its result. reports are streamed from the dumps, only requests that ask for the results (see
+// RankingRequest.withResults) hold them in memory, they are cached while their dump is current
+// close() waits (up to the query timeout) for accepted requests, the ones still waiting then are cancelled,
+// the shared connections are only released once the running ones are done
+// after a dump was published, the replaced versions of its market base are discarded by a throttled background pass
+// (at most one per base within DISCARD_INTERVAL), close() waits for it
+public class RankingEngine implements Closeable {
+
+    // results of the dump that was current when they were parsed
+    private static final class Parsed {
+
+        private final long fetched;
+
+        private final SortedSet<Result> results;
+
+        // pages cut short while parsing
+        private final List<Integer> truncated;
+
+        Parsed(final long fetched, final SortedSet<Result> results, final List<Integer> truncated) {
+            this.fetched = fetched;
+            this.results = results;
+            this.truncated = truncated;
+        }
+    }
+
+    // lock of one key, dropped from the map once nobody holds or waits for it
+    private static final class Monitor {
+
+        private int users;
+    }
+
+    // keeps the results of a report pass
+    private static final class Retained extends AbstractReporter {
+
+        private final SortedSet<Result> results = new TreeSet<>();
+
+        @Override
+        public void visit(final Result result, final ReportWriter writer) {
+            results.add(result);
+        }
+    }
+
+    // ranking of one query in one market, accepted but maybe not yet started
+    private final class Run implements Runnable {
+
+        private final File folder;
+
+        private final CompletableFuture<RankingResult> future = new CompletableFuture<>();
+
+        private final String key;
+
+        private final Market market;
+
+        private final RankingRequest request;
+
+        Run(final String key, final RankingRequest request, final Market market, final File folder) {
+            this.key = key;
+            this.request = request;
+            this.market = market;
+            this.folder = folder;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final RankingResult result = rank(request, market, folder);
+                // requests that arrive once the result is known start a run of their own
+                running.remove(key, future);
+                future.complete(result);
+            } catch (final Throwable e) {
+                running.remove(key, future);
+                // callers must never wait for a result that does not come
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final int CACHE_SIZE = 256;
+
+    // replaced versions are kept for hours (RetentionPolicy.RETIRED_AGE), looking for them more often is pointless
+    private static final long DISCARD_INTERVAL = TimeUnit.MINUTES.toMillis(10);
+
+    // default I/O bound of a discard pass
+    private static final long DISCARD_RATE = 10L * 1024L * 1024L;
+
+    private static ThreadFactory createThreadFactory(final String name) {
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // the only market uses base directly, all others get a folder of their own
+    static File getMarketBase(final File base, final List<Market> markets, final Market market) {
+        if ((markets.size() == 1) && markets.get(0).equals(market)) {
+            return base;
+        }
+        return new File(base, market.getName());
+    }
+
+    private final File base;
+
+    // query folder -> parsed results (of requests with results), least recently used first
+    private final Map<String, Parsed> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final CloseableHttpClient client;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    @CheckForNull
+    private final RetentionPolicy discard;
+
+    // market base -> start of its last discard pass
+    private final ConcurrentMap<File, Long> discarded = new ConcurrentHashMap<>();
+
+    @CheckForNull
+    private final ExecutorService discarder;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> hosts;
+
+    private final List<Market> markets;
+
+    // one ranking per query folder (requests with different hosts) and one writer per market report at a time
+    private final ConcurrentMap<String, Monitor> monitors = new ConcurrentHashMap<>();
+
+    private final ExecutorService pages;
+
+    private final RefreshPlanner planner;
+
+    private final ConcurrentMap<String, CompletableFuture<RankingResult>> running = new ConcurrentHashMap<>();
+
+    private final FetchSettings settings;
+
+    // markets, hosts: defaults for rank(String)
+    // threads: queries ranked concurrently, settings: how the pages of each query are fetched
+    public RankingEngine(final List<Market> markets, final File base, final Set<String> hosts, final int threads, final FetchSettings settings, final RefreshPlanner planner) {
+        this(markets, base, hosts, threads, settings, planner, RetentionPolicy.discard(RetentionPolicy.RETIRED_AGE, RetentionPolicy.STAGING_AGE, DISCARD_RATE));
+    }
+
+    // discard: pass over the market base after a dump was published, null if the caller runs the retention itself
+    // (e.g. archives the replaced versions)
+    public RankingEngine(final List<Market> markets, final File base, final Set<String> hosts, final int threads, final FetchSettings settings, final RefreshPlanner planner, @Nullable final RetentionPolicy discard) {
+        this.markets = Collections.unmodifiableList(new ArrayList<>(markets));
+        this.base = base;
+        this.hosts = Collections.unmodifiableSet(new TreeSet<>(hosts));
+        this.settings = settings;
+        this.planner = planner;
+        this.discard = discard;
+        if (discard == null) {
+            this.discarder = null;
+        } else {
+            // low priority, the passes must not slow down the fetches
+            final ThreadFactory factory = createThreadFactory("ranking-discard");
+            this.discarder = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = factory.newThread(runnable);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+
+        final int concurrency = Math.max(1, threads);
+        this.client = Dumper.createClient(settings.getTimeouts(), concurrency * settings.getConcurrency());
+        this.pages = Executors.newCachedThreadPool(createThreadFactory("ranking-page"));
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), createThreadFactory("ranking-query")) {
+
+            @Override
+            protected void terminated() {
+                // the last ranking is done, nothing uses the shared connections anymore
+                pages.shutdownNow();
+                try {
+                    client.close();
+                } catch (final IOException e) {
+                    // nothing left to do with it
+                }
+            }
+        };
+    }
+
+    private Monitor acquire(final String key) {
+        return monitors.compute(key, (ignored, monitor) -> {
+            final Monitor current = (monitor == null) ? new Monitor() : monitor;
+            current.users++;
+            return current;
+        });
+    }
+
+    private void cache(final File folder, final Parsed parsed) {
+        synchronized (cache) {
+            cache.put(folder.getPath(), parsed);
+            if (cache.size() > CACHE_SIZE) {
+                final Iterator<String> eldest = cache.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    // running rankings are never interrupted (they may be writing the catalog), only waiting ones are dropped
+    private void cancelWaiting() {
+        final List<Runnable> waiting = new ArrayList<>();
+        executor.getQueue().drainTo(waiting);
+        for (final Runnable run : waiting) {
+            if (run instanceof Run) {
+                ((Run) run).future.cancel(false);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.shutdown();
+        try {
+            final long timeout = settings.getTimeouts().getQuery();
+            if ((timeout > 0L) && !executor.awaitTermination(timeout, TimeUnit.MILLISECONDS)) {
+                cancelWaiting();
+            }
+            // the shared connections are released by the executor once the running rankings are done
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (discarder != null) {
+                // rankings are done, no further pass is scheduled
+                discarder.shutdown();
+                discarder.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (final InterruptedException e) {
+            cancelWaiting();
+            if (discarder != null) {
+                discarder.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // schedules a pass over marketBase unless one has been started recently
+    private void discard(final File marketBase) {
+        if (discarder == null) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final Long previous = discarded.get(marketBase);
+        if ((previous != null) && ((now - previous) < DISCARD_INTERVAL)) {
+            return;
+        }
+        final boolean scheduled = (previous == null) ? (discarded.putIfAbsent(marketBase, now) == null) : discarded.replace(marketBase, previous, now);
+        if (!scheduled) {
+            // another ranking of the same base was faster
+            return;
+        }
+
+        try {
+            discarder.execute(() -> {
+                try {
+                    new Retention(marketBase.toPath(), discard).call();
+                } catch (final IOException e) {
+                    // versions that could not be deleted are left for the next pass
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // closing, the next engine discards them
+        }
+    }
+
+    @CheckForNull
+    private Parsed getCached(final File folder, final long fetched) {
+        synchronized (cache) {
+            final Parsed parsed = cache.get(folder.getPath());
+            if ((parsed != null) && (parsed.fetched == fetched)) {
+                return parsed;
+            }
+            return null;
+        }
+    }
+
+    private File getMarketBase(final Market market) {
+        return getMarketBase(base, markets, market);
+    }
+
+    private boolean isDatabaseCurrent(@Nullable final Entry entry, final File folder) throws IOException {
+        final long now = System.currentTimeMillis();
+        if (entry != null) {
+            return !planner.isDue(entry, now);
+        }
+
+        // dumped before the catalog existed
+        final Date creationDate = Collector.getCreationDate(folder);
+        return (now - creationDate.getTime()) < planner.getMinInterval();
+    }
+
+    // fetches the query if it is due, then reports it
+    private RankingResult rank(final RankingRequest request, final Market market, final File folder) throws Exception {
+        final String query = request.getQuery();
+        final File marketBase = folder.getParentFile();
+        final Catalog catalog = Catalog.shared(marketBase);
+        final QueryEvent event = new QueryEvent();
+        event.begin();
+        Entry entry = null;
+        Dumper.Status status = null;
+        final String key = folder.getPath();
+        final Monitor monitor = acquire(key);
+        try {
+            synchronized (monitor) {
+                entry = catalog.get(folder.getName());
+                if (!isDatabaseCurrent(entry, folder)) {
+                    // replaces the old database atomically
+                    final Dumper dumper = new Dumper(market, query, marketBase, settings.forHosts(request.getHosts()), catalog, client, pages);
+                    status = dumper.collectData();
+                    if (status != Dumper.Status.TIMED_OUT) {
+                        // the published dump replaced the previous version
+                        discard(marketBase);
+                    }
+                    if ((status == Dumper.Status.TIMED_OUT) && !folder.isDirectory()) {
+                        return new RankingResult(market, folder, 0L, Collections.emptySortedSet(), new MarketReporter.MarketCollector(), null, status);
+                    }
+                    entry = catalog.get(folder.getName());
+                }
+                return report(request, market, folder, entry, status);
+            }
+        } finally {
+            release(key);
+            event.end();
+            if (event.shouldCommit()) {
+                event.setMarket(market.toString());
+                event.setPages((entry == null) ? 0 : entry.getPageCount());
+                event.setQuery(query);
+                event.setResults((entry == null) ? 0 : entry.getResultCount());
+                event.setStatus((status == null) ? "current" : status.name().toLowerCase(Locale.ENGLISH));
+                event.commit();
+            }
+        }
+    }
+
+    // ranks the request asynchronously, the future fails with the IOException (or other exception) of a market
+    public CompletableFuture<RankingResponse> rank(final RankingRequest request) {
+        if (closed.get()) {
+            throw new IllegalStateException("engine is closed");
+        }
+
+        final List<CompletableFuture<RankingResult>> futures = new ArrayList<>();
+        for (final Market market : request.getMarkets()) {
+            futures.add(submit(request, market));
+        }
+        final CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+        return all.thenApply(ignored -> respond(request, futures));
+    }
+
+    // the query in the markets of the engine, reported for the hosts of the engine
+    public CompletableFuture<RankingResponse> rank(final String query) {
+        return rank(new RankingRequest(query, markets, hosts));
+    }
+
+    private void release(final String key) {
+        monitors.computeIfPresent(key, (ignored, monitor) -> {
+            monitor.users--;
+            return (monitor.users == 0) ? null : monitor;
+        });
+    }
+
+    // writes the report of the current dump in a single pass, the results are only kept if the request asks for them
+    private RankingResult report(final RankingRequest request, final Market market, final File folder, @Nullable final Entry entry, @Nullable final Dumper.Status status) throws IOException {
+        // fetch time of the dump (0: dumped before the catalog existed, there is nothing to validate a cached copy)
+        final long run = (entry == null) ? 0L : entry.getFetched();
+        final Report report = new Report(request.getHosts());
+        final MarketReporter.MarketCollector ranks = new MarketReporter.MarketCollector();
+        final File file = new File(folder, Report.FILE_NAME);
+        if (!request.isWithResults()) {
+            // only one page of the dump is held in memory at any time
+            report.write(folder, market, request.getQuery(), settings.getMaxPages(), new Collector(folder, entry), run, ranks);
+            return new RankingResult(market, folder, run, Collections.emptySortedSet(), ranks, file, status);
+        }
+
+        final Parsed cached = (run > 0L) ? getCached(folder, run) : null;
+        if (cached != null) {
+            report.write(folder, market, request.getQuery(), settings.getMaxPages(), new SortedResultSource(cached.results, cached.truncated), run, ranks);
+            return new RankingResult(market, folder, run, cached.results, ranks, file, status);
+        }
+
+        final Collector collector = new Collector(folder, entry);
+        final Retained retained = new Retained();
+        report.write(folder, market, request.getQuery(), settings.getMaxPages(), collector, run, ranks, retained);
+        final Parsed parsed = new Parsed(run, Collections.unmodifiableSortedSet(retained.results), collector.getTruncated());
+        if (run > 0L) {
+            cache(folder, parsed);
+        }
+        return new RankingResult(market, folder, run, parsed.results, ranks, file, status);
+    }
+
+    private RankingResponse respond(final RankingRequest request, final List<CompletableFuture<RankingResult>> futures) {
+        final List<RankingResult> results = new ArrayList<>();
+        for (final CompletableFuture<RankingResult> future : futures) {
+            results.add(future.join());
+        }
+        if (results.size() == 1) {
+            return new RankingResponse(request, results, null);
+        }
+
+        final MarketReporter reporter = new MarketReporter(request.getQuery(), request.getHosts(), request.getMarkets());
+        for (final RankingResult result : results) {
+            reporter.collect(result.getMarket(), result.getRanks());
+        }
+        try {
+            final File folder = new File(base, "markets");
+            FileUtils.forceMkdir(folder);
+            final File report = new File(Collector.calculateDatabaseFolder(folder, request.getQuery()).getPath() + ".txt");
+            final String key = report.getPath();
+            final Monitor monitor = acquire(key);
+            try {
+                synchronized (monitor) {
+                    try (ReportWriter writer = Report.open(report)) {
+                        reporter.generate(writer);
+                    }
+                }
+            } finally {
+                release(key);
+            }
+            return new RankingResponse(request, results, report);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private CompletableFuture<RankingResult> submit(final RankingRequest request, final Market market) {
+        final File folder = Collector.calculateDatabaseFolder(getMarketBase(market), request.getQuery());
+        final String key = folder.getPath() + "\t" + new TreeSet<>(request.getHosts()) + "\t" + request.isWithResults();
+        final Run run = new Run(key, request, market, folder);
+        final CompletableFuture<RankingResult> previous = running.putIfAbsent(key, run.future);
+        if (previous != null) {
+            return previous;
+        }
+
+        try {
+            executor.execute(run);
+        } catch (final RejectedExecutionException e) {
+            running.remove(key, run.future);
+            run.future.completeExceptionally(new IllegalStateException("engine is closed", e));
+        }
+        return run.future;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.shadowhunt.ranking.data.Market;
+
+// one query to rank in one or more markets, reported for the tracked hosts
+public final class RankingRequest {
+
+    private final Set<String> hosts;
+
+    private final List<Market> markets;
+
+    private final String query;
+
+    private final boolean withResults;
+
+    public RankingRequest(final String query, final List<Market> markets, final Set<String> hosts) {
+        this(query, markets, hosts, false);
+    }
+
+    private RankingRequest(final String query, final List<Market> markets, final Set<String> hosts, final boolean withResults) {
+        if (markets.isEmpty()) {
+            throw new IllegalArgumentException("no market for '" + query + "'");
+        }
+        if (new HashSet<>(markets).size() != markets.size()) {
+            throw new IllegalArgumentException("duplicate market for '" + query + "': " + markets);
+        }
+        this.query = query;
+        this.markets = Collections.unmodifiableList(new ArrayList<>(markets));
+        this.hosts = Collections.unmodifiableSet(new HashSet<>(hosts));
+        this.withResults = withResults;
+    }
+
+    public Set<String> getHosts() {
+        return hosts;
+    }
+
+    public List<Market> getMarkets() {
+        return markets;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    // see withResults()
+    public boolean isWithResults() {
+        return withResults;
+    }
+
+    @Override
+    public String toString() {
+        return "RankingRequest [query=" + query + ", markets=" + markets + ", hosts=" + hosts + ", withResults=" + withResults + "]";
+    }
+
+    // same request, the RankingResults also carry the parsed results (instead of only streaming them into the reports);
+    // they are held in memory and cached by the engine while their dump is current
+    public RankingRequest withResults() {
+        return new RankingRequest(query, markets, hosts, true);
+    }
+}
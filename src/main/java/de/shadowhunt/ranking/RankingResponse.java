@@ -0,0 +1,62 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+// rankings of a request, one per market (in the order of the request)
+public final class RankingResponse {
+
+    @Nullable
+    private final File marketReport;
+
+    private final RankingRequest request;
+
+    private final List<RankingResult> results;
+
+    RankingResponse(final RankingRequest request, final List<RankingResult> results, @Nullable final File marketReport) {
+        this.request = request;
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.marketReport = marketReport;
+    }
+
+    // comparison of all markets, null for a single market
+    @CheckForNull
+    public File getMarketReport() {
+        return marketReport;
+    }
+
+    public RankingRequest getRequest() {
+        return request;
+    }
+
+    public List<RankingResult> getResults() {
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "RankingResponse [request=" + request + ", results=" + results + "]";
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.SortedSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.report.MarketReporter;
+
+// ranking of a query in one market
+public final class RankingResult {
+
+    private final long fetched;
+
+    private final File folder;
+
+    private final Market market;
+
+    // best rank per host, for the comparison of the markets
+    private final MarketReporter.MarketCollector ranks;
+
+    @Nullable
+    private final File report;
+
+    private final SortedSet<Result> results;
+
+    @Nullable
+    private final Dumper.Status status;
+
+    RankingResult(final Market market, final File folder, final long fetched, final SortedSet<Result> results, final MarketReporter.MarketCollector ranks, @Nullable final File report, @Nullable final Dumper.Status status) {
+        this.market = market;
+        this.folder = folder;
+        this.fetched = fetched;
+        this.results = Collections.unmodifiableSortedSet(results);
+        this.ranks = ranks;
+        this.report = report;
+        this.status = status;
+    }
+
+    // fetch time of the results (0: unknown)
+    public long getFetched() {
+        return fetched;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public Market getMarket() {
+        return market;
+    }
+
+    MarketReporter.MarketCollector getRanks() {
+        return ranks;
+    }
+
+    // null: nothing has been fetched yet, so there is nothing to report
+    @CheckForNull
+    public File getReport() {
+        return report;
+    }
+
+    // empty unless the request asked for them (see RankingRequest.withResults)
+    public SortedSet<Result> getResults() {
+        return results;
+    }
+
+    // null: the stored results were current, nothing has been fetched
+    @CheckForNull
+    public Dumper.Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "RankingResult [market=" + market + ", folder=" + folder + ", fetched=" + fetched + ", results=" + ranks.getCount() + ", status=" + status + "]";
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.ResultSource;
+import de.shadowhunt.ranking.data.ResultVisitor;
+import de.shadowhunt.ranking.data.Summary;
+import de.shadowhunt.ranking.history.History;
+import de.shadowhunt.ranking.report.AbstractReporter;
+import de.shadowhunt.ranking.report.HeaderReporter;
+import de.shadowhunt.ranking.report.HistoryReporter;
+import de.shadowhunt.ranking.report.PageReporter;
+import de.shadowhunt.ranking.report.ReportGenerator;
+import de.shadowhunt.ranking.report.ReportWriter;
+import de.shadowhunt.ranking.report.StatisticReporter;
+
+public class Report {
+
+    public static final String FILE_NAME = "report.txt";
+
+    public static ReportWriter open(final File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        return new ReportWriter(channel, StandardCharsets.UTF_8);
+    }
+
+    // a response cut off at the maximum size is stored as a complete page, so parsing it
+    // can not tell, the pages recorded by the Dumper are added to the summary
+    private static ResultSource withTruncated(final ResultSource source, final List<Integer> truncated) {
+        if (truncated.isEmpty()) {
+            return source;
+        }
+
+        return (required, visitor) -> source.accept(required, new ResultVisitor() {
+
+            @Override
+            public void begin(final Summary summary) {
+                visitor.begin(summary.withTruncated(truncated));
+            }
+
+            @Override
+            public void end() {
+                visitor.end();
+            }
+
+            @Override
+            public void visit(final Result result) {
+                visitor.visit(result);
+            }
+        });
+    }
+
+    private final Set<String> hosts;
+
+    public Report(final Set<String> hosts) {
+        this.hosts = Collections.unmodifiableSet(new HashSet<>(hosts));
+    }
+
+    // additional reporters take part in the same pass over the results, but must not write anything
+    public void write(final File folder, final Market market, final String query, final int maxPages, final ResultSource source, final AbstractReporter... additional) throws IOException {
+        write(folder, market, query, maxPages, source, 0L, additional);
+    }
+
+    // run: fetch time of the results (catalog entry), shown as query date and added to the history of the query once
+    // (0: unknown, the creation of the folder is shown and the history is only shown)
+    public void write(final File folder, final Market market, final String query, final int maxPages, final ResultSource source, final long run, final AbstractReporter... additional) throws IOException {
+        final Date date = (run > 0L) ? new Date(run) : Collector.getCreationDate(folder);
+        final List<AbstractReporter> reporters = new ArrayList<>();
+        final Properties metadata = Dumper.readMetadata(folder);
+        final boolean complete = !"incomplete".equals(metadata.getProperty("status"));
+        reporters.add(new HeaderReporter(market, query, maxPages, date, hosts, complete, Dumper.describeStop(metadata)));
+        reporters.add(new PageReporter(hosts));
+        reporters.add(new StatisticReporter(hosts));
+        reporters.add(new HistoryReporter(History.getFile(folder), run, hosts));
+        reporters.addAll(Arrays.asList(additional));
+
+        final File report = new File(folder, FILE_NAME);
+        try (ReportWriter writer = open(report)) {
+            new ReportGenerator(reporters).generate(withTruncated(source, Dumper.listTruncated(metadata)), writer);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
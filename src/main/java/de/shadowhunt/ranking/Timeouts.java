@@ -0,0 +1,56 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+// time limits of fetching one query, all in milliseconds (<= 0: unlimited)
+public final class Timeouts {
+
+    public static final Timeouts DEFAULT = new Timeouts(10_000, 30_000, 300_000);
+
+    private final int connect;
+
+    private final long query;
+
+    private final int read;
+
+    public Timeouts(final int connect, final int read, final long query) {
+        this.connect = connect;
+        this.read = read;
+        this.query = query;
+    }
+
+    // establishing the connection (and waiting for a pooled one)
+    public int getConnect() {
+        return connect;
+    }
+
+    // all pages of one query
+    public long getQuery() {
+        return query;
+    }
+
+    // maximum inactivity while waiting for response data
+    public int getRead() {
+        return read;
+    }
+
+    @Override
+    public String toString() {
+        return "Timeouts [connect=" + connect + ", read=" + read + ", query=" + query + "]";
+    }
+}
@@ -0,0 +1,329 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Page;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.ResultSource;
+import de.shadowhunt.ranking.data.ResultVisitor;
+import de.shadowhunt.ranking.data.Summary;
+
+// keeps the reports below base up to date: changes are debounced per query folder,
+// only changed pages are parsed again, all other pages are taken from the cache
+public class Watcher {
+
+    private static class FolderState {
+
+        private final Set<String> changed = new HashSet<>();
+
+        // page file name -> results with ranks relative to the page (starting with 1)
+        private final SortedMap<String, SortedSet<Result>> pages = new TreeMap<>();
+
+        private ScheduledFuture<?> refresh;
+
+        // page file names that were cut short while parsing
+        private final Set<String> truncated = new HashSet<>();
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Watcher.class);
+
+    private static final int MAX_DEPTH = 2;
+
+    private static boolean isHidden(final Path path) {
+        return path.getFileName().toString().startsWith(".");
+    }
+
+    private static boolean isPage(final Path path) {
+        return path.getFileName().toString().endsWith("html");
+    }
+
+    private final File base;
+
+    private final long debounce;
+
+    private final Market defaultMarket;
+
+    private final int defaultMaxPages;
+
+    private final Map<Path, FolderState> folders = new HashMap<>();
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    private final Report report;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    public Watcher(final File base, final Report report, final Market defaultMarket, final int defaultMaxPages, final long debounce) {
+        this.base = base;
+        this.report = report;
+        this.defaultMarket = defaultMarket;
+        this.defaultMaxPages = defaultMaxPages;
+        this.debounce = debounce;
+    }
+
+    private void assemble(final FolderState state, final ResultVisitor visitor) {
+        int count = 0;
+        int lastPage = 0;
+        int index = 1;
+        final List<Integer> truncated = new ArrayList<>();
+        for (final Map.Entry<String, SortedSet<Result>> page : state.pages.entrySet()) {
+            count += page.getValue().size();
+            if (!page.getValue().isEmpty()) {
+                lastPage = index;
+            }
+            if (state.truncated.contains(page.getKey())) {
+                truncated.add(index);
+            }
+            index++;
+        }
+        visitor.begin(new Summary(count, lastPage, truncated));
+
+        int pageCounter = 1;
+        int offset = 0;
+        for (final SortedSet<Result> page : state.pages.values()) {
+            for (final Result result : page) {
+                visitor.visit(new Result(pageCounter, result.getRank() + offset, result.getUri(), result.isAdvertisement()));
+            }
+            pageCounter++;
+            offset += page.size();
+        }
+        visitor.end();
+    }
+
+    private void changed(final Path folder, final String page) throws IOException {
+        synchronized (folders) {
+            FolderState state = folders.get(folder);
+            if (state == null) {
+                // first change in this folder: nothing is cached yet, so all pages must be parsed once
+                state = new FolderState();
+                folders.put(folder, state);
+                try (DirectoryStream<Path> pages = Files.newDirectoryStream(folder, Watcher::isPage)) {
+                    for (final Path existing : pages) {
+                        state.changed.add(existing.getFileName().toString());
+                    }
+                }
+            }
+
+            state.changed.add(page);
+            if (state.refresh != null) {
+                state.refresh.cancel(false);
+            }
+            state.refresh = scheduler.schedule(() -> refresh(folder), debounce, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void changedAll(final Path folder) throws IOException {
+        try (DirectoryStream<Path> pages = Files.newDirectoryStream(folder, Watcher::isPage)) {
+            for (final Path page : pages) {
+                changed(folder, page.getFileName().toString());
+            }
+        }
+    }
+
+    // drops the cached pages, pending refreshes and watch keys of the folder and all folders below it
+    private void forget(final Path folder) {
+        final Iterator<Map.Entry<WatchKey, Path>> watched = keys.entrySet().iterator();
+        while (watched.hasNext()) {
+            final Map.Entry<WatchKey, Path> entry = watched.next();
+            if (entry.getValue().startsWith(folder)) {
+                entry.getKey().cancel();
+                watched.remove();
+            }
+        }
+
+        synchronized (folders) {
+            final Iterator<Map.Entry<Path, FolderState>> cached = folders.entrySet().iterator();
+            while (cached.hasNext()) {
+                final Map.Entry<Path, FolderState> entry = cached.next();
+                if (entry.getKey().startsWith(folder)) {
+                    final ScheduledFuture<?> refresh = entry.getValue().refresh;
+                    if (refresh != null) {
+                        refresh.cancel(false);
+                    }
+                    cached.remove();
+                }
+            }
+        }
+    }
+
+    private void handle(final WatchService service, final Path folder, final WatchEvent<?> event) throws IOException {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // events were lost, treat every known folder as changed
+            for (final Path known : new ArrayList<>(keys.values())) {
+                changedAll(known);
+            }
+            return;
+        }
+
+        final Path child = folder.resolve((Path) event.context());
+        if (isHidden(child)) {
+            return;
+        }
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+            // new (or atomically replaced) query folder: nothing of a previous dump at this path is valid
+            forget(child);
+            register(service, child, base.toPath().relativize(child).getNameCount());
+            changedAll(child);
+            return;
+        }
+
+        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && keys.containsValue(child)) {
+            forget(child);
+            return;
+        }
+
+        if (isPage(child)) {
+            changed(folder, child.getFileName().toString());
+        }
+    }
+
+    private void refresh(final Path folder) {
+        final FolderState state;
+        final Set<String> changed;
+        synchronized (folders) {
+            state = folders.get(folder);
+            if (state == null) {
+                return;
+            }
+            changed = new HashSet<>(state.changed);
+            state.changed.clear();
+            state.refresh = null;
+        }
+
+        try {
+            for (final String name : changed) {
+                final File file = folder.resolve(name).toFile();
+                if (file.isFile()) {
+                    final Page page = new Page(file, 1, 1);
+                    state.pages.put(name, page.parse());
+                    if (page.isTruncated()) {
+                        state.truncated.add(name);
+                    } else {
+                        state.truncated.remove(name);
+                    }
+                } else {
+                    state.pages.remove(name);
+                    state.truncated.remove(name);
+                }
+            }
+
+            synchronized (folders) {
+                if (state.pages.isEmpty() || (folders.get(folder) != state)) {
+                    // the folder was replaced or deleted while parsing, its new state is refreshed next
+                    return;
+                }
+            }
+
+            final Properties metadata = Dumper.readMetadata(folder.toFile());
+            final String market = metadata.getProperty("market");
+            final String pages = metadata.getProperty("pages");
+            final String query = metadata.getProperty("query", StringUtils.replaceChars(folder.getFileName().toString(), '_', ' '));
+            final ResultSource source = (required, visitor) -> assemble(state, visitor);
+            report.write(folder.toFile(), //
+                    (market == null) ? defaultMarket : Market.parse(market), //
+                    query, //
+                    (pages == null) ? defaultMaxPages : Integer.parseInt(pages), //
+                    source);
+        } catch (final IOException | RuntimeException e) {
+            // pages may still be written, the next event will trigger another refresh
+            LOGGER.error("refreshing {} failed", folder, e);
+        }
+    }
+
+    private void register(final WatchService service, final Path folder, final int depth) throws IOException {
+        final WatchKey key = folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, folder);
+
+        if (depth < MAX_DEPTH) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+                for (final Path child : children) {
+                    if (Files.isDirectory(child) && !isHidden(child)) {
+                        register(service, child, depth + 1);
+                    }
+                }
+            }
+        }
+    }
+
+    public void run() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            register(service, base.toPath(), 0);
+            while (!Thread.currentThread().isInterrupted()) {
+                final WatchKey key = service.take();
+                final Path folder = keys.get(key);
+                if (folder == null) {
+                    // cancelled while its events were queued
+                    continue;
+                }
+
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    try {
+                        handle(service, folder, event);
+                    } catch (final IOException e) {
+                        // folder vanished while handling the event (e.g. replaced by a new dump)
+                        LOGGER.error("handling {} in {} failed", event.context(), folder, e);
+                    }
+                }
+
+                if (!key.reset()) {
+                    // folder was deleted or replaced
+                    keys.remove(key);
+                    if (!keys.containsValue(folder)) {
+                        synchronized (folders) {
+                            folders.remove(folder);
+                        }
+                    }
+                }
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+// append-only index of the query folders below one base folder, one line per published dump:
+// <folder> TAB <fetched> TAB <query> TAB <fetched>:<results>:<sha-256>[,...] (one triple per page)
+// TAB <volatility> TAB <host>[,...] (top of the organic ranking) TAB complete|incomplete
+// readers only apply lines appended since their last look (under a shared lock on .catalog.lock),
+// writers append and compact under an exclusive lock on it
+public class Catalog {
+
+    public static final String FILE_NAME = ".catalog";
+
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private static final String COMPLETE = "complete";
+
+    private static final String INCOMPLETE = "incomplete";
+
+    private static final String LOCK_NAME = ".catalog.lock";
+
+    // FileLock is held per process, threads of the same process have to be serialized separately
+    private static final ConcurrentMap<Path, Object> MONITORS = new ConcurrentHashMap<>();
+
+    // one catalog per market base and jvm, so its entries are read only once
+    private static final ConcurrentMap<Path, Catalog> SHARED = new ConcurrentHashMap<>();
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String format(final Entry entry) {
+        final StringBuilder line = new StringBuilder();
+        line.append(entry.getFolder()).append('\t');
+        line.append(entry.getFetched()).append('\t');
+        line.append(encode(entry.getQuery())).append('\t');
+        final List<PageRecord> pages = entry.getPages();
+        for (int i = 0; i < pages.size(); i++) {
+            final PageRecord page = pages.get(i);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(page.getFetched()).append(':').append(page.getResults()).append(':').append(page.getHash());
+        }
+        line.append('\t').append(String.format(Locale.ROOT, "%.4f", entry.getVolatility()));
+        line.append('\t').append(StringUtils.join(entry.getRanking(), ','));
+        line.append('\t').append(entry.isComplete() ? COMPLETE : INCOMPLETE);
+        return line.append('\n').toString();
+    }
+
+    public static String hash(final byte[] content) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final byte[] hash = digest.digest(content);
+        final StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (final byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    @CheckForNull
+    static Entry parse(final String line) {
+        final String[] columns = StringUtils.splitPreserveAllTokens(line, '\t');
+        if ((columns.length < 4) || (columns.length == 5) || (columns.length > 7)) {
+            return null;
+        }
+
+        final long fetched = NumberUtils.toLong(columns[1], -1L);
+        if (fetched < 0L) {
+            return null;
+        }
+
+        final List<PageRecord> pages = new ArrayList<>();
+        for (final String page : StringUtils.split(columns[3], ',')) {
+            final String[] fields = StringUtils.splitPreserveAllTokens(page, ':');
+            if (fields.length != 3) {
+                return null;
+            }
+            pages.add(new PageRecord(NumberUtils.toLong(fields[0]), NumberUtils.toInt(fields[1]), fields[2]));
+        }
+        if (columns.length == 4) {
+            // written before volatility was learned
+            return new Entry(columns[0], decode(columns[2]), fetched, pages);
+        }
+
+        final double volatility = NumberUtils.toDouble(columns[4], Entry.UNKNOWN_VOLATILITY);
+        final List<String> ranking = Arrays.asList(StringUtils.split(columns[5], ','));
+        final boolean complete = (columns.length == 6) || !INCOMPLETE.equals(columns[6]);
+        return new Entry(columns[0], decode(columns[2]), fetched, pages, ranking, volatility, complete);
+    }
+
+    // catalog of base shared by everything in this jvm (the constructor creates an independent one, like another process)
+    public static Catalog shared(final File base) {
+        return SHARED.computeIfAbsent(base.toPath().toAbsolutePath().normalize(), folder -> new Catalog(folder.toFile()));
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final Path file;
+
+    // identity of the log file the entries have been read from, changes on compaction
+    private Object key;
+
+    private final Path lock;
+
+    private final Object monitor;
+
+    // bytes of the log file that have been applied to entries
+    private long offset;
+
+    // lines applied to entries, compaction is due when they clearly outnumber the entries
+    private int records;
+
+    public Catalog(final File base) {
+        final Path folder = base.toPath().toAbsolutePath().normalize();
+        this.file = folder.resolve(FILE_NAME);
+        this.lock = folder.resolve(LOCK_NAME);
+        this.monitor = MONITORS.computeIfAbsent(file, path -> new Object());
+    }
+
+    private void apply(final String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+
+        final Entry entry = parse(line);
+        if (entry != null) {
+            entries.put(entry.getFolder(), entry);
+        }
+        records++;
+    }
+
+    private void compact() throws IOException {
+        final List<Entry> current = new ArrayList<>(entries.values());
+        current.sort(Comparator.comparing(Entry::getFolder));
+
+        final Path temp = file.resolveSibling(FILE_NAME + "-" + UUID.randomUUID());
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                for (final Entry entry : current) {
+                    write(channel, format(entry));
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        load();
+    }
+
+    @CheckForNull
+    public Entry get(final String folder) throws IOException {
+        synchronized (monitor) {
+            refresh();
+            return entries.get(folder);
+        }
+    }
+
+    public List<Entry> list() throws IOException {
+        synchronized (monitor) {
+            refresh();
+            final List<Entry> result = new ArrayList<>(entries.values());
+            result.sort(Comparator.comparing(Entry::getFolder));
+            return result;
+        }
+    }
+
+    public void record(final Entry entry) throws IOException {
+        synchronized (monitor) {
+            try (FileChannel lockChannel = FileChannel.open(lock, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                // released by closing the channel
+                lockChannel.lock();
+
+                // learn from the previous fetch of the same folder (by any process)
+                load();
+                final Entry learned = RefreshPlanner.learn(entries.get(entry.getFolder()), entry);
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    final String line = format(learned);
+                    // a writer that died mid-line must not take the new line with it
+                    write(channel, isLineComplete(channel) ? line : ("\n" + line));
+                }
+
+                load();
+                if ((records > COMPACT_THRESHOLD) && (records > (2 * entries.size()))) {
+                    compact();
+                }
+            }
+        }
+    }
+
+    private boolean isLineComplete(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size == 0L) {
+            return true;
+        }
+
+        final ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    // applies the lines appended since the last look, the caller holds .catalog.lock (shared or exclusive)
+    private void load() throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            reset(null);
+            return;
+        }
+
+        final Object fileKey = attributes.fileKey();
+        final long size = attributes.size();
+        // replaced by a compaction: start over (without a file key every change is a replacement)
+        if (!Objects.equals(key, fileKey) || (size < offset) || ((fileKey == null) && (size != offset))) {
+            reset(fileKey);
+        }
+        if (size == offset) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - offset));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            // a line is only complete (and applied) with its terminating newline
+            int start = 0;
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    apply(new String(buffer.array(), start, i - start, StandardCharsets.UTF_8));
+                    start = i + 1;
+                }
+            }
+            offset += start;
+        } catch (final NoSuchFileException e) {
+            // replaced concurrently, picked up on the next refresh
+        }
+    }
+
+    // a compaction replaces the file under the exclusive lock, so it is only read under the shared lock;
+    // otherwise the replacement could be read from the offset reached in the replaced file
+    private void refresh() throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final NoSuchFileException e) {
+            reset(null);
+            return;
+        }
+        if ((attributes.fileKey() != null) && attributes.fileKey().equals(key) && (attributes.size() == offset)) {
+            // nothing appended, nothing replaced
+            return;
+        }
+
+        final FileChannel lockChannel;
+        try {
+            lockChannel = FileChannel.open(lock, StandardOpenOption.READ);
+        } catch (final NoSuchFileException e) {
+            // no writer ever took the lock, so nothing has been compacted
+            load();
+            return;
+        }
+        try (FileChannel channel = lockChannel) {
+            // released by closing the channel
+            channel.lock(0L, Long.MAX_VALUE, true);
+            load();
+        }
+    }
+
+    private void reset(@Nullable final Object fileKey) {
+        entries.clear();
+        key = fileKey;
+        offset = 0L;
+        records = 0;
+    }
+
+    // writes at the end of the channel
+    private void write(final FileChannel channel, final String line) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.shadowhunt.ranking.data.Summary;
+
+public final class Entry {
+
+    public static final double UNKNOWN_VOLATILITY = -1.0;
+
+    // false if a timeout stopped fetching before the last page
+    private final boolean complete;
+
+    private final long fetched;
+
+    private final String folder;
+
+    private final List<PageRecord> pages;
+
+    private final String query;
+
+    // distinct organic hosts in rank order, limited to the top of the result list
+    private final List<String> ranking;
+
+    // learned rank movement between consecutive fetches: 0 (stable) .. 1 (completely reshuffled)
+    private final double volatility;
+
+    public Entry(final String folder, final String query, final long fetched, final List<PageRecord> pages) {
+        this(folder, query, fetched, pages, Collections.emptyList(), UNKNOWN_VOLATILITY, true);
+    }
+
+    public Entry(final String folder, final String query, final long fetched, final List<PageRecord> pages, final List<String> ranking, final double volatility, final boolean complete) {
+        this.folder = folder;
+        this.query = query;
+        this.fetched = fetched;
+        this.pages = Collections.unmodifiableList(new ArrayList<>(pages));
+        this.ranking = Collections.unmodifiableList(new ArrayList<>(ranking));
+        this.volatility = volatility;
+        this.complete = complete;
+    }
+
+    public long getAge(final long now) {
+        return now - fetched;
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public int getPageCount() {
+        return pages.size();
+    }
+
+    // index 0 is page 1
+    public List<PageRecord> getPages() {
+        return pages;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<String> getRanking() {
+        return ranking;
+    }
+
+    public int getResultCount() {
+        int count = 0;
+        for (final PageRecord page : pages) {
+            count += page.getResults();
+        }
+        return count;
+    }
+
+    public Summary getSummary() {
+        int count = 0;
+        int lastPage = 0;
+        for (int i = 0; i < pages.size(); i++) {
+            final int results = pages.get(i).getResults();
+            if (results > 0) {
+                lastPage = i + 1;
+            }
+            count += results;
+        }
+        return new Summary(count, lastPage);
+    }
+
+    public double getVolatility() {
+        return volatility;
+    }
+
+    public boolean hasVolatility() {
+        return volatility >= 0.0;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    Entry withVolatility(final double learned) {
+        return new Entry(folder, query, fetched, pages, ranking, learned, complete);
+    }
+
+    @Override
+    public String toString() {
+        return "Entry [folder=" + folder + ", query=" + query + ", fetched=" + fetched + ", pages=" + pages.size() + "]";
+    }
+}
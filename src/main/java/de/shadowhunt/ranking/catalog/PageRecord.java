@@ -0,0 +1,50 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+public final class PageRecord {
+
+    private final long fetched;
+
+    private final String hash;
+
+    private final int results;
+
+    public PageRecord(final long fetched, final int results, final String hash) {
+        this.fetched = fetched;
+        this.results = results;
+        this.hash = hash;
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public int getResults() {
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRecord [fetched=" + fetched + ", results=" + results + ", hash=" + hash + "]";
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.annotation.Nullable;
+
+// assigns every query a refresh interval between minInterval (volatile) and maxInterval (stable)
+// and orders the due queries by how far they are behind their interval per page they cost
+public class RefreshPlanner {
+
+    private static final class Candidate implements Comparable<Candidate> {
+
+        // largest page count of the query in any market
+        private final int pageCount;
+
+        // age relative to the interval, >= 1 once due
+        private final double priority;
+
+        private final String query;
+
+        Candidate(final String query, final double priority, final int pageCount) {
+            this.query = query;
+            this.priority = priority;
+            this.pageCount = pageCount;
+        }
+
+        @Override
+        public int compareTo(final Candidate o) {
+            // most overdue per page request first, ties in a stable order
+            final int result = Double.compare(o.getDensity(), getDensity());
+            if (result != 0) {
+                return result;
+            }
+            return query.compareTo(o.query);
+        }
+
+        // requests per market, every query costs at least one
+        int getCost() {
+            return Math.max(1, pageCount);
+        }
+
+        double getDensity() {
+            return priority / getCost();
+        }
+
+        Candidate merge(final double otherPriority, final int otherPageCount) {
+            return new Candidate(query, Math.max(priority, otherPriority), Math.max(pageCount, otherPageCount));
+        }
+    }
+
+    // weight of the newest observation in the learned volatility
+    private static final double ALPHA = 0.3;
+
+    public static final int RANKING_SIZE = 20;
+
+    // volatility at (and above) which a query is refreshed at minInterval
+    private static final double SATURATION = 0.25;
+
+    // mean rank movement of all hosts in either ranking, hosts that dropped out count as rank RANKING_SIZE
+    static double displacement(final List<String> previous, final List<String> current) {
+        final Map<String, Integer> ranks = new HashMap<>();
+        for (int i = 0; i < previous.size(); i++) {
+            ranks.putIfAbsent(previous.get(i), i);
+        }
+
+        int hosts = ranks.size();
+        double sum = 0.0;
+        for (int i = 0; i < current.size(); i++) {
+            final Integer rank = ranks.remove(current.get(i));
+            if (rank == null) {
+                hosts++;
+                sum += RANKING_SIZE - i;
+            } else {
+                sum += Math.abs(rank - i);
+            }
+        }
+        for (final Integer rank : ranks.values()) {
+            sum += RANKING_SIZE - rank;
+        }
+
+        if (hosts == 0) {
+            return 0.0;
+        }
+        return Math.min(1.0, sum / (hosts * (double) RANKING_SIZE));
+    }
+
+    static Entry learn(@Nullable final Entry previous, final Entry current) {
+        if ((previous == null) || current.hasVolatility()) {
+            return current;
+        }
+        if (previous.getRanking().isEmpty() || current.getRanking().isEmpty()) {
+            // nothing to compare, keep what has been learned so far
+            return current.withVolatility(previous.getVolatility());
+        }
+
+        final double observed = displacement(previous.getRanking(), current.getRanking());
+        if (!previous.hasVolatility()) {
+            return current.withVolatility(observed);
+        }
+        final double learned = previous.getVolatility() + (ALPHA * (observed - previous.getVolatility()));
+        return current.withVolatility(learned);
+    }
+
+    // ln(minInterval / maxInterval), precomputed for the geometric interpolation
+    private final double logRatio;
+
+    private final long maxInterval;
+
+    private final long minInterval;
+
+    public RefreshPlanner(final long minInterval, final long maxInterval) {
+        if ((minInterval <= 0) || (maxInterval < minInterval)) {
+            throw new IllegalArgumentException("invalid refresh interval bounds: " + minInterval + " - " + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.logRatio = Math.log((double) minInterval / maxInterval);
+    }
+
+    public long getInterval(final Entry entry) {
+        if (!entry.hasVolatility() || !entry.isComplete()) {
+            // not enough history yet (learn quickly) or cut short by a timeout
+            return minInterval;
+        }
+
+        // geometric interpolation, the bounds are typically hours versus days apart
+        final double scale = Math.min(1.0, entry.getVolatility() / SATURATION);
+        final double interval = maxInterval * Math.exp(scale * logRatio);
+        return Math.max(minInterval, Math.min(maxInterval, Math.round(interval)));
+    }
+
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    public boolean isDue(final Entry entry, final long now) {
+        return entry.getAge(now) >= getInterval(entry);
+    }
+
+    // queries that are due, most overdue per page request first, until the budget (in page requests) is used up;
+    // a query is fetched in all markets, so it is charged its page count once per market
+    public List<String> plan(final Collection<Entry> entries, final long now, final int budget, final int markets) {
+        // every query costs at least one request per market
+        final int limit = (markets <= 0) ? 0 : (budget / markets);
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        // the same query catalogued in several markets is planned once: as overdue as its most overdue market
+        final Map<String, Candidate> due = new HashMap<>();
+        for (final Entry entry : entries) {
+            final double priority = entry.getAge(now) / (double) getInterval(entry);
+            if (priority < 1.0) {
+                continue;
+            }
+            final Candidate previous = due.get(entry.getQuery());
+            if (previous == null) {
+                due.put(entry.getQuery(), new Candidate(entry.getQuery(), priority, entry.getPageCount()));
+            } else {
+                due.put(entry.getQuery(), previous.merge(priority, entry.getPageCount()));
+            }
+        }
+
+        // at most limit queries fit into the budget: keep only the limit best ones (worst on top of the heap),
+        // queries that exceed the whole budget on their own never fit
+        final PriorityQueue<Candidate> heap = new PriorityQueue<>(Collections.reverseOrder());
+        for (final Candidate candidate : due.values()) {
+            if (candidate.getCost() > limit) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(candidate);
+            } else if (candidate.compareTo(heap.peek()) < 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        final List<Candidate> candidates = new ArrayList<>(heap);
+        Collections.sort(candidates);
+
+        final List<String> plan = new ArrayList<>();
+        int remaining = budget;
+        for (final Candidate candidate : candidates) {
+            if (remaining < markets) {
+                break;
+            }
+            final int cost = candidate.getCost() * markets;
+            if (cost > remaining) {
+                // would overshoot the budget, a smaller query further down may still fit
+                continue;
+            }
+            plan.add(candidate.query);
+            remaining -= cost;
+        }
+        return plan;
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.data;
+
+import java.net.URI;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+
+public final class Market {
+
+    public static final String DEFAULT_LANGUAGE = "de";
+
+    // <language>[-<region>]@<instance>, e.g. de-AT@www.google.at or en@https://www.google.com
+    public static Market parse(final String definition) {
+        final String locale = StringUtils.substringBefore(definition, "@");
+        final String instance = StringUtils.substringAfter(definition, "@");
+        if (StringUtils.isBlank(locale) || StringUtils.isBlank(instance)) {
+            throw new IllegalArgumentException("invalid market definition: " + definition);
+        }
+
+        final String language = StringUtils.substringBefore(locale, "-");
+        final String region = StringUtils.substringAfter(locale, "-");
+        if (instance.contains("://")) {
+            return new Market(URI.create(instance), language, region);
+        }
+        return new Market(URI.create("https://" + instance), language, region);
+    }
+
+    private final URI instance;
+
+    private final String language;
+
+    private final String region;
+
+    public Market(final URI instance, final String language, @Nullable final String region) {
+        this.instance = instance;
+        this.language = language.toLowerCase(Locale.ENGLISH);
+        this.region = StringUtils.upperCase(StringUtils.trimToEmpty(region), Locale.ENGLISH);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Market other = (Market) obj;
+        if (!instance.equals(other.instance)) {
+            return false;
+        }
+        if (!language.equals(other.language)) {
+            return false;
+        }
+        return region.equals(other.region);
+    }
+
+    public String getAcceptLanguage() {
+        if (hasRegion()) {
+            return language + "-" + region + "," + language + ";q=0.5";
+        }
+        return language + ";q=0.5";
+    }
+
+    public URI getInstance() {
+        return instance;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public String getName() {
+        final StringBuilder name = new StringBuilder(instance.getHost());
+        final int port = instance.getPort();
+        if (port >= 0) {
+            name.append('_').append(port);
+        }
+        name.append('_').append(getTag());
+        return name.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getTag() {
+        if (hasRegion()) {
+            return language + "-" + region;
+        }
+        return language;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = (prime * result) + instance.hashCode();
+        result = (prime * result) + language.hashCode();
+        result = (prime * result) + region.hashCode();
+        return result;
+    }
+
+    public boolean hasRegion() {
+        return !region.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return getTag() + "@" + instance;
+    }
+}
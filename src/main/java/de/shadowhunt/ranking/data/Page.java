@@ -19,70 +19,70 @@ package de.shadowhunt.ranking.data;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
-import org.apache.commons.lang3.StringUtils;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import de.shadowhunt.ranking.profiling.ParseEvent;
 
 public final class Page {
 
-    private static final String CHARSET = StandardCharsets.UTF_8.name();
+    // content beyond is not parsed
+    public static final long MAX_SIZE = 4L * 1024L * 1024L;
 
     private final File file;
 
+    private final long maxSize;
+
     private final int pageId;
 
     private final int rank;
 
+    private boolean truncated;
+
     public Page(final File file, final int pageId, final int rank) {
+        this(file, pageId, rank, MAX_SIZE);
+    }
+
+    public Page(final File file, final int pageId, final int rank, final long maxSize) {
         this.file = file;
         this.pageId = pageId;
         this.rank = rank;
+        this.maxSize = maxSize;
     }
 
-    private URI extractUri(final Element link, final boolean advertisement) {
-        final Element parent = link.parent();
-        final Element greatParent = parent.parent();
-        if (advertisement) {
-            final String url = greatParent.attr("data-preconnect-urls");
-            final String[] split = StringUtils.split(url, ",");
-            return URI.create(split[0]);
+    private void commit(final ParseEvent event, final long bytes, final int results) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setBytes(bytes);
+            event.setFile(file.getPath());
+            event.setPage(pageId);
+            event.setResults(results);
+            event.commit();
         }
-        final String url = greatParent.attr("href");
-        return URI.create(url);
     }
 
-    private boolean isAdvertisement(final Element element) {
-        final Elements siblings = element.siblingElements();
-        for (int i = 0; i < siblings.size(); i++) {
-            final Element sibling = siblings.get(i);
-            final String text = sibling.text();
-            if ("Ad".equals(text) || "Anzeige".equals(text)) {
-                return true;
-            }
-        }
-
-        return false;
+    // true: the page was larger than the maximum size (or malformed), only the results before have been parsed
+    public boolean isTruncated() {
+        return truncated;
     }
 
+    // streams the file, memory does not depend on its size
     public SortedSet<Result> parse() throws IOException {
-        final Document document = Jsoup.parse(file, CHARSET);
-
-        final SortedSet<Result> results = new TreeSet<>();
-        final Elements links = document.getElementsByTag("cite");
-        for (int i = 0; i < links.size(); i++) {
-            final Element link = links.get(i);
-            final boolean advertisement = isAdvertisement(link);
-            final URI uri = extractUri(link, advertisement);
-            final Result result = new Result(pageId, rank + i, uri, advertisement);
-            results.add(result);
+        final ParseEvent event = new ParseEvent();
+        event.begin();
+        final long length = file.length();
+        final PageScanner scanner = new PageScanner(pageId, rank);
+        final SortedSet<Result> results;
+        try (InputStream input = new BoundedInputStream(Files.newInputStream(file.toPath()), maxSize)) {
+            results = scanner.scan(new InputStreamReader(input, StandardCharsets.UTF_8));
         }
+        truncated = scanner.isTruncated() || (length > maxSize);
+        commit(event, length, results.size());
         return results;
     }
 }
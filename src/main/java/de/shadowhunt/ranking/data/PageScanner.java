@@ -0,0 +1,522 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.data;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.helper.StringUtil;
+import org.jsoup.parser.Parser;
+
+// streaming scan for the cite results of a page: instead of a complete dom only the open
+// elements are kept, each with the few attributes and the (short) text extraction looks at
+final class PageScanner {
+
+    // a cite element, its advertisement marker is known once its parent is closed
+    private static final class Cite {
+
+        @CheckForNull
+        private final String href;
+
+        private final int index;
+
+        private boolean label;
+
+        @CheckForNull
+        private final String preconnect;
+
+        Cite(final int index, @Nullable final Element grandParent) {
+            this.index = index;
+            this.href = (grandParent == null) ? null : grandParent.href;
+            this.preconnect = (grandParent == null) ? null : grandParent.preconnect;
+        }
+    }
+
+    private static final class Element {
+
+        @CheckForNull
+        private Cite cite;
+
+        @CheckForNull
+        private List<Cite> cites;
+
+        @CheckForNull
+        private final String href;
+
+        private int labels;
+
+        private final String name;
+
+        private boolean overflow;
+
+        @CheckForNull
+        private final String preconnect;
+
+        @CheckForNull
+        private StringBuilder text;
+
+        Element(final String name, @Nullable final String href, @Nullable final String preconnect) {
+            this.name = name;
+            this.href = href;
+            this.preconnect = preconnect;
+        }
+
+        void append(final CharSequence content) {
+            if (overflow || (content.length() == 0)) {
+                return;
+            }
+            if (text == null) {
+                text = new StringBuilder(content.length());
+            }
+            if ((text.length() + content.length()) > MAX_TEXT) {
+                overflow = true;
+                text = null;
+                return;
+            }
+            text.append(content);
+        }
+
+        // the complete text of the element is exactly an advertisement marker
+        boolean isLabel() {
+            if (overflow || (text == null) || (text.length() < 2)) {
+                return false;
+            }
+            // both markers start with 'A' (unless written as an entity)
+            if ((text.indexOf("A") < 0) && (text.indexOf("&") < 0)) {
+                return false;
+            }
+            final String normalized = StringUtil.normaliseWhitespace(unescape(text.toString(), false)).trim();
+            return "Ad".equals(normalized) || "Anzeige".equals(normalized);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    // nesting beyond is treated as malformed
+    private static final int MAX_DEPTH = 512;
+
+    // tags beyond (e.g. a lost '>') are treated as malformed
+    private static final int MAX_TAG = 64 * 1024;
+
+    // longer texts can not be an advertisement marker
+    private static final int MAX_TEXT = 256;
+
+    // content is not markup, skipped up to the matching end tag
+    private static final Set<String> RAW_TEXT = new HashSet<>(Arrays.asList("iframe", "noembed", "noframes", "script", "style", "textarea", "title", "xmp"));
+
+    private static final Set<String> VOID = new HashSet<>(Arrays.asList("area", "base", "br", "col", "embed", "hr", "img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr"));
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    private int count;
+
+    private int index;
+
+    private final Deque<Element> open = new ArrayDeque<>();
+
+    private final int pageId;
+
+    private int position;
+
+    private final int rank;
+
+    private Reader reader;
+
+    private final SortedSet<Result> results = new TreeSet<>();
+
+    private final StringBuilder token = new StringBuilder();
+
+    private boolean truncated;
+
+    // first value of the attribute in the content of a start tag (without '<' and '>')
+    @CheckForNull
+    private static String attribute(final CharSequence tag, final String attribute) {
+        final int length = tag.length();
+        int i = 0;
+        // tag name
+        while ((i < length) && !isSeparator(tag.charAt(i))) {
+            i++;
+        }
+
+        while (i < length) {
+            while ((i < length) && (isSeparator(tag.charAt(i)) || (tag.charAt(i) == '/'))) {
+                i++;
+            }
+            final int nameStart = i;
+            while ((i < length) && !isSeparator(tag.charAt(i)) && (tag.charAt(i) != '=') && (tag.charAt(i) != '/')) {
+                i++;
+            }
+            final String name = tag.subSequence(nameStart, i).toString();
+            while ((i < length) && isSeparator(tag.charAt(i))) {
+                i++;
+            }
+
+            String value = "";
+            if ((i < length) && (tag.charAt(i) == '=')) {
+                i++;
+                while ((i < length) && isSeparator(tag.charAt(i))) {
+                    i++;
+                }
+                if ((i < length) && ((tag.charAt(i) == '"') || (tag.charAt(i) == '\''))) {
+                    final char quote = tag.charAt(i++);
+                    final int valueStart = i;
+                    while ((i < length) && (tag.charAt(i) != quote)) {
+                        i++;
+                    }
+                    value = tag.subSequence(valueStart, i).toString();
+                    i++;
+                } else {
+                    final int valueStart = i;
+                    while ((i < length) && !isSeparator(tag.charAt(i))) {
+                        i++;
+                    }
+                    value = tag.subSequence(valueStart, i).toString();
+                }
+            }
+
+            if (attribute.equalsIgnoreCase(name)) {
+                return unescape(value, true);
+            }
+            if (name.isEmpty() && (i == nameStart)) {
+                // no progress (e.g. a stray '=')
+                i++;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSeparator(final char c) {
+        return (c == ' ') || (c == '\t') || (c == '\n') || (c == '\r') || (c == '\f');
+    }
+
+    private static String name(final CharSequence tag, final int start) {
+        int end = start;
+        while ((end < tag.length()) && !isSeparator(tag.charAt(end)) && (tag.charAt(end) != '/')) {
+            end++;
+        }
+        return tag.subSequence(start, end).toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    // the parser for entities is expensive to create, most values do not contain any
+    private static String unescape(final String value, final boolean attribute) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        return Parser.unescapeEntities(value, attribute);
+    }
+
+    PageScanner(final int pageId, final int rank) {
+        this.pageId = pageId;
+        this.rank = rank;
+    }
+
+    private void close(final Element element) {
+        final Element parent = open.peek();
+        if (parent != null) {
+            if (element.isLabel()) {
+                parent.labels++;
+                if (element.cite != null) {
+                    element.cite.label = true;
+                }
+            }
+            // the text of an element contains the text of all its children
+            if (element.overflow) {
+                parent.overflow = true;
+                parent.text = null;
+            } else if (element.text != null) {
+                parent.append(element.text);
+            }
+        }
+
+        if (element.cites != null) {
+            for (final Cite cite : element.cites) {
+                // another child (not the cite itself) is an advertisement marker
+                final boolean advertisement = (element.labels - (cite.label ? 1 : 0)) > 0;
+                final URI uri = createUri(cite, advertisement);
+                if (uri != null) {
+                    results.add(new Result(pageId, rank + cite.index, uri, advertisement));
+                }
+            }
+        }
+    }
+
+    private void closeUntil(final String name) {
+        boolean found = false;
+        for (final Element element : open) {
+            if (element.name.equals(name)) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            // stray end tag
+            return;
+        }
+
+        while (!open.isEmpty()) {
+            final Element element = open.pop();
+            close(element);
+            if (element.name.equals(name)) {
+                return;
+            }
+        }
+    }
+
+    @CheckForNull
+    private URI createUri(final Cite cite, final boolean advertisement) {
+        try {
+            if (advertisement) {
+                final String[] split = StringUtils.split(cite.preconnect, ",");
+                if ((split == null) || (split.length == 0)) {
+                    return null;
+                }
+                return URI.create(split[0]);
+            }
+            return URI.create(StringUtils.defaultString(cite.href));
+        } catch (final IllegalArgumentException e) {
+            // malformed link, the result is skipped
+            return null;
+        }
+    }
+
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    // c: the character after '<', returns the character after the markup
+    private int markup(final int c) throws IOException {
+        if (c == '!') {
+            final int first = next();
+            if (first == '-') {
+                final int second = next();
+                if (second == '-') {
+                    return skipComment();
+                }
+                return skipDeclaration(second);
+            }
+            return skipDeclaration(first);
+        }
+        if (c == '?') {
+            return skipDeclaration(c);
+        }
+
+        token.setLength(0);
+        int n = c;
+        int quote = 0;
+        int last = 0;
+        while (n >= 0) {
+            if (quote != 0) {
+                if (n == quote) {
+                    quote = 0;
+                }
+            } else if (((n == '"') || (n == '\'')) && (last == '=')) {
+                quote = n;
+            } else if (n == '>') {
+                break;
+            }
+            if ((quote == 0) && !isSeparator((char) n)) {
+                last = n;
+            }
+            token.append((char) n);
+            if (token.length() > MAX_TAG) {
+                truncated = true;
+                return -1;
+            }
+            n = next();
+        }
+        if (n < 0) {
+            // content ends within the tag
+            truncated = true;
+            return -1;
+        }
+
+        if (token.charAt(0) == '/') {
+            closeUntil(name(token, 1));
+            return next();
+        }
+
+        final String name = name(token, 0);
+        final boolean selfClosing = token.charAt(token.length() - 1) == '/';
+        open(name, token, selfClosing);
+        if (RAW_TEXT.contains(name) && !selfClosing) {
+            return skipRawText(name);
+        }
+        return next();
+    }
+
+    private int next() throws IOException {
+        if (index == count) {
+            count = reader.read(buffer);
+            index = 0;
+            if (count <= 0) {
+                count = 0;
+                return -1;
+            }
+        }
+        return buffer[index++];
+    }
+
+    private void open(final String name, final StringBuilder tag, final boolean selfClosing) {
+        final boolean empty = VOID.contains(name) || selfClosing;
+        // only the attributes of possible grand parents of a cite are needed
+        final boolean attributes = !empty && (tag.indexOf("=") >= 0);
+        final String href = attributes ? attribute(tag, "href") : null;
+        final String preconnect = attributes ? attribute(tag, "data-preconnect-urls") : null;
+        final Element element = new Element(name, href, preconnect);
+        if ("cite".equals(name)) {
+            final Element parent = open.peek();
+            final Element grandParent = (open.size() > 1) ? secondOpen() : null;
+            element.cite = new Cite(position++, grandParent);
+            if (parent != null) {
+                if (parent.cites == null) {
+                    parent.cites = new ArrayList<>();
+                }
+                parent.cites.add(element.cite);
+            }
+        }
+
+        if (empty) {
+            close(element);
+            return;
+        }
+        if (open.size() >= MAX_DEPTH) {
+            truncated = true;
+            return;
+        }
+        open.push(element);
+    }
+
+    // scans all results of the content, reader is not closed
+    SortedSet<Result> scan(final Reader content) throws IOException {
+        this.reader = content;
+        final StringBuilder text = new StringBuilder();
+        int c = next();
+        while ((c >= 0) && !truncated) {
+            if (c != '<') {
+                text.append((char) c);
+                if (text.length() >= BUFFER_SIZE) {
+                    text(text);
+                }
+                c = next();
+                continue;
+            }
+
+            final int following = next();
+            if (Character.isLetter(following) || (following == '/') || (following == '!') || (following == '?')) {
+                text(text);
+                c = markup(following);
+            } else {
+                // a plain '<' in the text
+                text.append('<');
+                c = following;
+            }
+        }
+        text(text);
+
+        // everything still open is closed by the end of the content
+        while (!open.isEmpty()) {
+            close(open.pop());
+        }
+        return results;
+    }
+
+    private Element secondOpen() {
+        final Iterator<Element> iterator = open.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    private int skipComment() throws IOException {
+        int previous = 0;
+        int current = 0;
+        int c = next();
+        while (c >= 0) {
+            if ((c == '>') && (previous == '-') && (current == '-')) {
+                return next();
+            }
+            previous = current;
+            current = c;
+            c = next();
+        }
+        return -1;
+    }
+
+    private int skipDeclaration(final int first) throws IOException {
+        int c = first;
+        while ((c >= 0) && (c != '>')) {
+            c = next();
+        }
+        return (c < 0) ? -1 : next();
+    }
+
+    private int skipRawText(final String name) throws IOException {
+        int c = next();
+        while (c >= 0) {
+            if (c != '<') {
+                c = next();
+                continue;
+            }
+            c = next();
+            if (c != '/') {
+                continue;
+            }
+
+            int i = 0;
+            c = next();
+            while ((i < name.length()) && (c >= 0) && (Character.toLowerCase((char) c) == name.charAt(i))) {
+                i++;
+                c = next();
+            }
+            if ((i == name.length()) && ((c == '>') || (c == '/') || ((c >= 0) && isSeparator((char) c)))) {
+                while ((c >= 0) && (c != '>')) {
+                    c = next();
+                }
+                closeUntil(name);
+                return (c < 0) ? -1 : next();
+            }
+        }
+        return -1;
+    }
+
+    private void text(final StringBuilder text) {
+        if (text.length() == 0) {
+            return;
+        }
+        final Element element = open.peek();
+        if (element != null) {
+            element.append(text);
+        }
+        text.setLength(0);
+    }
+}
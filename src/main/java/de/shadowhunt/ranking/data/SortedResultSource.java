@@ -0,0 +1,56 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+public final class SortedResultSource implements ResultSource {
+
+    private final SortedSet<Result> data;
+
+    private final List<Integer> truncated;
+
+    public SortedResultSource(final SortedSet<Result> data) {
+        this(data, Collections.emptyList());
+    }
+
+    // truncated: pages that were cut short while parsing the data (see Page.isTruncated)
+    public SortedResultSource(final SortedSet<Result> data, final Collection<Integer> truncated) {
+        this.data = Collections.unmodifiableSortedSet(data);
+        this.truncated = Collections.unmodifiableList(new ArrayList<>(truncated));
+    }
+
+    @Override
+    public void accept(final Set<Summary.Value> required, final ResultVisitor visitor) {
+        if (data.isEmpty()) {
+            visitor.begin(Summary.EMPTY.withTruncated(truncated));
+        } else {
+            visitor.begin(new Summary(data.size(), data.last().getPage(), truncated));
+        }
+
+        for (final Result result : data) {
+            visitor.visit(result);
+        }
+        visitor.end();
+    }
+}
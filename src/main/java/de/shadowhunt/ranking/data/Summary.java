@@ -0,0 +1,75 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+public final class Summary {
+
+    public enum Value {
+        COUNT, LAST_PAGE, TRUNCATED
+    }
+
+    public static final Summary EMPTY = new Summary(0, 0);
+
+    private final int count;
+
+    private final int lastPage;
+
+    // pages that were cut short (see Page.isTruncated), ascending
+    private final List<Integer> truncated;
+
+    public Summary(final int count, final int lastPage) {
+        this(count, lastPage, Collections.emptyList());
+    }
+
+    public Summary(final int count, final int lastPage, final Collection<Integer> truncated) {
+        this.count = count;
+        this.lastPage = lastPage;
+        this.truncated = Collections.unmodifiableList(new ArrayList<>(new TreeSet<>(truncated)));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getLastPage() {
+        return lastPage;
+    }
+
+    public List<Integer> getTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public String toString() {
+        return "Summary [count=" + count + ", lastPage=" + lastPage + ", truncated=" + truncated + "]";
+    }
+
+    // same summary, the given pages are truncated as well
+    public Summary withTruncated(final Collection<Integer> pages) {
+        final SortedSet<Integer> union = new TreeSet<>(truncated);
+        union.addAll(pages);
+        return new Summary(count, lastPage, union);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// per query sketches live in <base>/.history/<query folder>.sketch
+public final class History {
+
+    public static final String FOLDER = ".history";
+
+    private static final String SUFFIX = ".sketch";
+
+    public static Path getFile(final File queryFolder) {
+        final Path base = queryFolder.toPath().toAbsolutePath().getParent();
+        return base.resolve(FOLDER).resolve(queryFolder.getName() + SUFFIX);
+    }
+
+    // all per query sketches below base merged into one, the files are read and merged in parallel
+    public static QuerySketch merge(final File base) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(base.toPath().resolve(FOLDER), "[!.]*" + SUFFIX)) {
+            for (final Path file : stream) {
+                files.add(file);
+            }
+        } catch (final NoSuchFileException e) {
+            return new QuerySketch();
+        }
+
+        try {
+            return files.parallelStream().collect(QuerySketch::new, (merged, file) -> {
+                try {
+                    merged.merge(QuerySketch.read(file));
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, QuerySketch::merge);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private History() {
+        // prevent instantiation
+    }
+}
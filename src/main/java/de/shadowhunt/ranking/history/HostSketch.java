@@ -0,0 +1,97 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// everything known about one host (within one query or across all queries), constant size
+public final class HostSketch {
+
+    public static HostSketch read(final DataInput input) throws IOException {
+        final HostSketch sketch = new HostSketch();
+        sketch.appearances = input.readInt();
+        sketch.results = input.readInt();
+        sketch.advertisements = input.readInt();
+        sketch.ranks.merge(RankSketch.read(input));
+        sketch.urls.merge(HyperLogLog.read(input));
+        return sketch;
+    }
+
+    private int advertisements;
+
+    // runs the host appeared in
+    private int appearances;
+
+    // best rank per appearance
+    private final RankSketch ranks = new RankSketch();
+
+    private int results;
+
+    private final HyperLogLog urls = new HyperLogLog();
+
+    public void addAppearance(final int bestRank) {
+        appearances++;
+        ranks.add(bestRank);
+    }
+
+    public void addResult(final String url, final boolean advertisement) {
+        results++;
+        if (advertisement) {
+            advertisements++;
+        }
+        urls.add(url);
+    }
+
+    public int getAdvertisements() {
+        return advertisements;
+    }
+
+    public int getAppearances() {
+        return appearances;
+    }
+
+    public long getDistinctUrls() {
+        return urls.estimate();
+    }
+
+    public RankSketch getRanks() {
+        return ranks;
+    }
+
+    public int getResults() {
+        return results;
+    }
+
+    public void merge(final HostSketch other) {
+        appearances += other.appearances;
+        results += other.results;
+        advertisements += other.advertisements;
+        ranks.merge(other.ranks);
+        urls.merge(other.urls);
+    }
+
+    public void write(final DataOutput output) throws IOException {
+        output.writeInt(appearances);
+        output.writeInt(results);
+        output.writeInt(advertisements);
+        ranks.write(output);
+        urls.write(output);
+    }
+}
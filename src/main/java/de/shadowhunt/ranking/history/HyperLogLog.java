@@ -0,0 +1,130 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// HyperLogLog with 2^PRECISION one byte registers (~6.5% standard error), registers are
+// allocated on the first add and persisted sparse, as most hosts have few distinct urls
+public final class HyperLogLog {
+
+    private static final int PRECISION = 8;
+
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1.0 + (1.079 / REGISTERS));
+
+    // FNV-1a over the chars, finished with the murmur3 mixer for well distributed high bits
+    static long hash(final CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public static HyperLogLog read(final DataInput input) throws IOException {
+        final HyperLogLog sketch = new HyperLogLog();
+        final int count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            final int index = input.readUnsignedByte();
+            final byte value = input.readByte();
+            sketch.update(index, value);
+        }
+        return sketch;
+    }
+
+    private byte[] registers;
+
+    public void add(final CharSequence value) {
+        final long hash = hash(value);
+        final int index = (int) (hash >>> (64 - PRECISION));
+        final int rho = Long.numberOfLeadingZeros(hash << PRECISION) + 1;
+        update(index, (byte) Math.min(rho, (64 - PRECISION) + 1));
+    }
+
+    public long estimate() {
+        if (registers == null) {
+            return 0L;
+        }
+
+        double sum = 0.0;
+        int zeros = 0;
+        for (final byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+
+        final double estimate = (ALPHA * REGISTERS * REGISTERS) / sum;
+        if ((estimate <= (2.5 * REGISTERS)) && (zeros > 0)) {
+            // linear counting is far more accurate for small cardinalities
+            return Math.round(REGISTERS * Math.log((double) REGISTERS / zeros));
+        }
+        return Math.round(estimate);
+    }
+
+    public void merge(final HyperLogLog other) {
+        if (other.registers == null) {
+            return;
+        }
+        for (int i = 0; i < REGISTERS; i++) {
+            update(i, other.registers[i]);
+        }
+    }
+
+    private void update(final int index, final byte value) {
+        if (registers == null) {
+            if (value == 0) {
+                return;
+            }
+            registers = new byte[REGISTERS];
+        }
+        if (registers[index] < value) {
+            registers[index] = value;
+        }
+    }
+
+    public void write(final DataOutput output) throws IOException {
+        int count = 0;
+        if (registers != null) {
+            for (final byte register : registers) {
+                if (register != 0) {
+                    count++;
+                }
+            }
+        }
+
+        output.writeShort(count);
+        for (int i = 0; (registers != null) && (i < REGISTERS); i++) {
+            if (registers[i] != 0) {
+                output.writeByte(i);
+                output.writeByte(registers[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// sketches of all hosts seen in the runs of one query (or merged over many queries)
+public final class QuerySketch {
+
+    private static final int VERSION = 1;
+
+    public static QuerySketch read(final Path file) throws IOException {
+        final QuerySketch sketch = new QuerySketch();
+        try (InputStream stream = Files.newInputStream(file); DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            final int version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported sketch version " + version + " in " + file);
+            }
+            sketch.runs = input.readInt();
+            sketch.lastRun = input.readLong();
+            final int hosts = input.readInt();
+            for (int i = 0; i < hosts; i++) {
+                final String host = input.readUTF();
+                sketch.hosts.put(host, HostSketch.read(input));
+            }
+        } catch (final NoSuchFileException e) {
+            // no history yet
+        }
+        return sketch;
+    }
+
+    private final Map<String, HostSketch> hosts = new HashMap<>();
+
+    // identity (fetch time) of the newest recorded run, so a run is only recorded once
+    private long lastRun;
+
+    private int runs;
+
+    public void addRun(final long run) {
+        runs++;
+        lastRun = Math.max(lastRun, run);
+    }
+
+    public HostSketch getHost(final String host) {
+        return hosts.computeIfAbsent(host, name -> new HostSketch());
+    }
+
+    public Map<String, HostSketch> getHosts() {
+        return Collections.unmodifiableMap(hosts);
+    }
+
+    public long getLastRun() {
+        return lastRun;
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    public void merge(final QuerySketch other) {
+        runs += other.runs;
+        lastRun = Math.max(lastRun, other.lastRun);
+        for (final Map.Entry<String, HostSketch> entry : other.hosts.entrySet()) {
+            getHost(entry.getKey()).merge(entry.getValue());
+        }
+    }
+
+    public void write(final Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        final Path temp = file.resolveSibling("." + file.getFileName() + "-" + UUID.randomUUID());
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp); DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+                output.writeInt(VERSION);
+                output.writeInt(runs);
+                output.writeLong(lastRun);
+                output.writeInt(hosts.size());
+                for (final Map.Entry<String, HostSketch> entry : hosts.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    entry.getValue().write(output);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// mergeable rank histogram: ranks up to EXACT are counted exactly, higher ranks in
+// buckets growing by GROWTH, so quantiles have a relative error below 5% in constant memory
+public final class RankSketch {
+
+    private static final int EXACT = 100;
+
+    private static final double GROWTH = 1.05;
+
+    private static final double LOG_GROWTH = Math.log(GROWTH);
+
+    private static final int MAX_BUCKETS = 256;
+
+    static int bucket(final int rank) {
+        if (rank <= EXACT) {
+            return Math.max(0, rank - 1);
+        }
+        final int bucket = EXACT + (int) (Math.log((double) rank / EXACT) / LOG_GROWTH);
+        return Math.min(MAX_BUCKETS - 1, bucket);
+    }
+
+    static int lowerBound(final int bucket) {
+        if (bucket < EXACT) {
+            return bucket + 1;
+        }
+        return (int) Math.ceil(EXACT * Math.pow(GROWTH, bucket - EXACT));
+    }
+
+    public static RankSketch read(final DataInput input) throws IOException {
+        final RankSketch sketch = new RankSketch();
+        final int buckets = input.readUnsignedShort();
+        for (int i = 0; i < buckets; i++) {
+            final int bucket = input.readUnsignedByte();
+            final int count = input.readInt();
+            sketch.grow(bucket);
+            sketch.counts[bucket] += count;
+            sketch.total += count;
+        }
+        return sketch;
+    }
+
+    // only grows up to the highest bucket in use, most hosts never leave the exact range
+    private int[] counts = new int[0];
+
+    private long total;
+
+    public void add(final int rank) {
+        final int bucket = bucket(rank);
+        grow(bucket);
+        counts[bucket]++;
+        total++;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    private void grow(final int bucket) {
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, bucket + 1);
+        }
+    }
+
+    public void merge(final RankSketch other) {
+        grow(other.counts.length - 1);
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    // smallest rank r with at least quantile of all ranks <= r (0 if empty)
+    public int quantile(final double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1L, (long) Math.ceil(quantile * total));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return lowerBound(i);
+            }
+        }
+        return lowerBound(counts.length - 1);
+    }
+
+    public void write(final DataOutput output) throws IOException {
+        int buckets = 0;
+        for (final int count : counts) {
+            if (count > 0) {
+                buckets++;
+            }
+        }
+
+        output.writeShort(buckets);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                output.writeByte(i);
+                output.writeInt(counts[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.shadowhunt.ranking.Collector;
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.catalog.Entry;
+import de.shadowhunt.ranking.data.Market;
+
+// keeps a RankingIndex of the query folders below the market bases in sync with their catalogs:
+// a folder is only parsed again when its catalog records a newer dump
+public class IndexLoader {
+
+    // outcome of a refresh, what could not be read keeps its previous results and is retried next time
+    public static final class Refresh {
+
+        private int changed;
+
+        private final Map<File, Exception> failures = new LinkedHashMap<>();
+
+        // number of query folders that were (re)loaded or dropped
+        public int getChanged() {
+            return changed;
+        }
+
+        // market base (catalog) or query folder -> cause
+        public Map<File, Exception> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        @Override
+        public String toString() {
+            return "changed " + changed + " folders, " + failures.size() + " failed";
+        }
+    }
+
+    private final Map<Market, File> bases;
+
+    private final Map<Market, Catalog> catalogs = new LinkedHashMap<>();
+
+    private volatile RankingIndex index = RankingIndex.EMPTY;
+
+    // <market>/<folder> -> loaded results
+    private final Map<String, IndexedQuery> loaded = new HashMap<>();
+
+    public IndexLoader(final Map<Market, File> bases) {
+        this.bases = new LinkedHashMap<>(bases);
+        for (final Map.Entry<Market, File> entry : this.bases.entrySet()) {
+            catalogs.put(entry.getKey(), Catalog.shared(entry.getValue()));
+        }
+    }
+
+    public RankingIndex getIndex() {
+        return index;
+    }
+
+    public synchronized Refresh refresh() {
+        final Refresh refresh = new Refresh();
+        final Map<String, IndexedQuery> current = new HashMap<>();
+        for (final Map.Entry<Market, Catalog> market : catalogs.entrySet()) {
+            final String tag = market.getKey().toString();
+            final File base = bases.get(market.getKey());
+            final List<Entry> entries;
+            try {
+                entries = market.getValue().list();
+            } catch (final IOException | RuntimeException e) {
+                // catalog is unreadable right now (e.g. the share is gone), keep what was loaded of the market before
+                refresh.failures.put(base, e);
+                for (final Map.Entry<String, IndexedQuery> previous : loaded.entrySet()) {
+                    if (previous.getKey().startsWith(tag + "/")) {
+                        current.put(previous.getKey(), previous.getValue());
+                    }
+                }
+                continue;
+            }
+
+            for (final Entry entry : entries) {
+                final String key = tag + "/" + entry.getFolder();
+                final IndexedQuery previous = loaded.get(key);
+                if ((previous != null) && (previous.getFetched() == entry.getFetched())) {
+                    current.put(key, previous);
+                    continue;
+                }
+
+                final File folder = new File(base, entry.getFolder());
+                try {
+                    final Collector collector = new Collector(folder, entry);
+                    current.put(key, new IndexedQuery(tag, entry.getFolder(), entry.getQuery(), entry.getFetched(), collector.parseData()));
+                    refresh.changed++;
+                } catch (final IOException | RuntimeException e) {
+                    // folder is replaced or removed right now, keep what was loaded before and retry next time
+                    refresh.failures.put(folder, e);
+                    if (previous != null) {
+                        current.put(key, previous);
+                    }
+                }
+            }
+        }
+
+        for (final String key : loaded.keySet()) {
+            if (!current.containsKey(key)) {
+                refresh.changed++;
+            }
+        }
+
+        if ((refresh.changed > 0) || (index == RankingIndex.EMPTY)) {
+            loaded.clear();
+            loaded.putAll(current);
+            index = RankingIndex.build(loaded.values(), System.currentTimeMillis());
+        }
+        return refresh;
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.shadowhunt.ranking.data.Result;
+
+// read-only http/json api on top of the RankingIndex (bound to localhost), the index is refreshed in the
+// background and every request is answered from the snapshot that was current when it arrived:
+// /hosts?host=<host>[&rank=<max rank>][&ads=exclude|include|only][&market=<market>][&limit=<postings>]
+// /queries?q=<query>[&host=<host>][&rank=<max rank>][&ads=exclude|include|only][&market=<market>]
+// /top[?rank=<max rank>][&ads=exclude|include|only][&market=<market>][&limit=<hosts>]
+// /status
+// headers and body are flushed separately: without -Dsun.net.httpserver.nodelay=true (set by the launcher)
+// the body waits for the delayed ack of the client, about 40 ms per request
+public class IndexServer implements AutoCloseable {
+
+    private interface Endpoint {
+
+        void answer(RankingIndex index, Map<String, String> parameters, JsonWriter json);
+    }
+
+    private static final int DEFAULT_HOST_LIMIT = 100;
+
+    private static final int DEFAULT_TOP_LIMIT = 20;
+
+    private static final int DEFAULT_TOP_RANK = 10;
+
+    private static String error(@Nullable final String message) {
+        return new JsonWriter().beginObject().name("error").value(String.valueOf(message)).endObject().toString();
+    }
+
+    private static RankingIndex.Advertisements getAdvertisements(final Map<String, String> parameters) {
+        final String value = parameters.get("ads");
+        if (value == null) {
+            return RankingIndex.Advertisements.INCLUDE;
+        }
+        final RankingIndex.Advertisements advertisements = RankingIndex.Advertisements.parse(value);
+        if (advertisements == null) {
+            throw new IllegalArgumentException("invalid ads: " + value);
+        }
+        return advertisements;
+    }
+
+    private static int getInt(final Map<String, String> parameters, final String name, final int defaultValue) {
+        final String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            final int parsed = Integer.parseInt(value);
+            if (parsed < 0) {
+                throw new IllegalArgumentException("invalid " + name + ": " + value);
+            }
+            return parsed;
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + name + ": " + value, e);
+        }
+    }
+
+    private static String getRequired(final Map<String, String> parameters, final String name) {
+        final String value = parameters.get(name);
+        if ((value == null) || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("missing parameter: " + name);
+        }
+        return value.trim();
+    }
+
+    private static void hosts(final RankingIndex index, final Map<String, String> parameters, final JsonWriter json) {
+        final String host = getRequired(parameters, "host");
+        final int rank = getInt(parameters, "rank", Integer.MAX_VALUE);
+        final int limit = getInt(parameters, "limit", DEFAULT_HOST_LIMIT);
+        final List<Posting> postings = index.findHost(host, rank, getAdvertisements(parameters), parameters.get("market"), limit);
+
+        json.beginObject().name("host").value(host).name("postings").beginArray();
+        for (final Posting posting : postings) {
+            final IndexedQuery query = posting.getQuery();
+            final Result result = posting.getResult();
+            json.beginObject();
+            json.name("query").value(query.getQuery()).name("market").value(query.getMarket()).name("fetched").value(query.getFetched());
+            json.name("rank").value(result.getRank()).name("page").value(result.getPage()).name("uri").value(result.getUri().toString());
+            json.name("advertisement").value(result.isAdvertisement()).name("count").value(posting.getCount());
+            json.endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static Map<String, String> parse(final URI uri) {
+        final Map<String, String> parameters = new HashMap<>();
+        for (final NameValuePair parameter : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+            if (parameter.getValue() != null) {
+                parameters.putIfAbsent(parameter.getName(), parameter.getValue());
+            }
+        }
+        return parameters;
+    }
+
+    private static void queries(final RankingIndex index, final Map<String, String> parameters, final JsonWriter json) {
+        final String query = getRequired(parameters, "q");
+        final String host = parameters.get("host");
+        final int rank = getInt(parameters, "rank", Integer.MAX_VALUE);
+        final RankingIndex.Advertisements advertisements = getAdvertisements(parameters);
+
+        json.beginObject().name("queries").beginArray();
+        for (final IndexedQuery found : index.findQuery(query, parameters.get("market"))) {
+            json.beginObject();
+            json.name("query").value(found.getQuery()).name("market").value(found.getMarket()).name("fetched").value(found.getFetched());
+            json.name("results").beginArray();
+            for (final Result result : found.getResults()) {
+                if (result.getRank() > rank) {
+                    break;
+                }
+                if (!advertisements.accepts(result) || ((host != null) && !host.equalsIgnoreCase(RankingIndex.getHost(result)))) {
+                    continue;
+                }
+                json.beginObject();
+                json.name("rank").value(result.getRank()).name("page").value(result.getPage()).name("uri").value(result.getUri().toString());
+                json.name("advertisement").value(result.isAdvertisement());
+                json.endObject();
+            }
+            json.endArray().endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, raw.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(raw);
+        }
+    }
+
+    private static void status(final RankingIndex index, final Map<String, String> parameters, final JsonWriter json) {
+        json.beginObject();
+        json.name("loaded").value(index.getLoaded()).name("queries").value(index.getQueries()).name("hosts").value(index.getHosts());
+        json.name("postings").value(index.getPostings()).name("results").value(index.getResults());
+        json.endObject();
+    }
+
+    private static void top(final RankingIndex index, final Map<String, String> parameters, final JsonWriter json) {
+        final int rank = getInt(parameters, "rank", DEFAULT_TOP_RANK);
+        final int limit = getInt(parameters, "limit", DEFAULT_TOP_LIMIT);
+        final List<RankingIndex.HostCount> top = index.top(rank, getAdvertisements(parameters), parameters.get("market"), limit);
+
+        json.beginObject().name("rank").value(rank).name("hosts").beginArray();
+        for (final RankingIndex.HostCount count : top) {
+            json.beginObject().name("host").value(count.getHost()).name("queries").value(count.getCount()).endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    private final ExecutorService executor;
+
+    @CheckForNull
+    private final Consumer<IndexLoader.Refresh> listener;
+
+    private final IndexLoader loader;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private final HttpServer server;
+
+    // refresh: milliseconds between two looks at the catalogs
+    // listener: gets the outcome of every background refresh (e.g. the folders that failed), null to ignore them
+    public IndexServer(final int port, final IndexLoader loader, final long refresh, final int threads, @Nullable final Consumer<IndexLoader.Refresh> listener) throws IOException {
+        this.loader = loader;
+        this.listener = listener;
+        this.executor = Executors.newFixedThreadPool(threads);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/hosts", exchange -> handle(exchange, IndexServer::hosts));
+        server.createContext("/queries", exchange -> handle(exchange, IndexServer::queries));
+        server.createContext("/status", exchange -> handle(exchange, IndexServer::status));
+        server.createContext("/top", exchange -> handle(exchange, IndexServer::top));
+        server.setExecutor(executor);
+        server.start();
+
+        scheduler.scheduleWithFixedDelay(this::refresh, refresh, refresh, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public URI getUri() {
+        final InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    private void handle(final HttpExchange exchange, final Endpoint endpoint) throws IOException {
+        try {
+            final URI uri = exchange.getRequestURI();
+            if (!uri.getPath().equals(exchange.getHttpContext().getPath())) {
+                respond(exchange, HttpStatus.SC_NOT_FOUND, error("no such endpoint"));
+                return;
+            }
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, HttpStatus.SC_METHOD_NOT_ALLOWED, error("read-only"));
+                return;
+            }
+
+            final JsonWriter json = new JsonWriter();
+            try {
+                endpoint.answer(loader.getIndex(), parse(uri), json);
+            } catch (final IllegalArgumentException e) {
+                respond(exchange, HttpStatus.SC_BAD_REQUEST, error(e.getMessage()));
+                return;
+            }
+            respond(exchange, HttpStatus.SC_OK, json.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void refresh() {
+        // whatever failed keeps its last snapshot, the next refresh will try again
+        final IndexLoader.Refresh outcome = loader.refresh();
+        if (listener != null) {
+            listener.accept(outcome);
+        }
+    }
+}
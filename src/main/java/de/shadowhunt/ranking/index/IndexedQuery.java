@@ -0,0 +1,72 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import de.shadowhunt.ranking.data.Result;
+
+// results of one query folder (one market) as loaded into the index, sorted by rank
+public final class IndexedQuery {
+
+    private final long fetched;
+
+    private final String folder;
+
+    private final String market;
+
+    private final String query;
+
+    private final List<Result> results;
+
+    public IndexedQuery(final String market, final String folder, final String query, final long fetched, final Collection<Result> results) {
+        this.market = market;
+        this.folder = folder;
+        this.query = query;
+        this.fetched = fetched;
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    }
+
+    public long getFetched() {
+        return fetched;
+    }
+
+    public String getFolder() {
+        return folder;
+    }
+
+    public String getMarket() {
+        return market;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedQuery [market=" + market + ", folder=" + folder + ", fetched=" + fetched + ", results=" + results.size() + "]";
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+// minimal streaming json writer for the responses of the IndexServer
+final class JsonWriter {
+
+    private final StringBuilder json = new StringBuilder(256);
+
+    // a value was written at the current level, the next one needs a separator
+    private boolean separate;
+
+    JsonWriter beginArray() {
+        separate();
+        json.append('[');
+        separate = false;
+        return this;
+    }
+
+    JsonWriter beginObject() {
+        separate();
+        json.append('{');
+        separate = false;
+        return this;
+    }
+
+    JsonWriter endArray() {
+        json.append(']');
+        separate = true;
+        return this;
+    }
+
+    JsonWriter endObject() {
+        json.append('}');
+        separate = true;
+        return this;
+    }
+
+    private void escape(final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    JsonWriter name(final String name) {
+        separate();
+        escape(name);
+        json.append(':');
+        separate = false;
+        return this;
+    }
+
+    private void separate() {
+        if (separate) {
+            json.append(',');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return json.toString();
+    }
+
+    JsonWriter value(final boolean value) {
+        separate();
+        json.append(value);
+        separate = true;
+        return this;
+    }
+
+    JsonWriter value(final long value) {
+        separate();
+        json.append(value);
+        separate = true;
+        return this;
+    }
+
+    JsonWriter value(final String value) {
+        separate();
+        escape(value);
+        separate = true;
+        return this;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.util.Comparator;
+
+import de.shadowhunt.ranking.data.Result;
+
+// best result of one host within one indexed query, organic results and advertisements are posted separately
+public final class Posting {
+
+    static final Comparator<Posting> RANK_ORDER = Comparator.comparingInt((final Posting posting) -> posting.result.getRank()) //
+            .thenComparing(posting -> posting.query.getFolder()) //
+            .thenComparing(posting -> posting.query.getMarket());
+
+    private final int count;
+
+    private final IndexedQuery query;
+
+    private final Result result;
+
+    Posting(final IndexedQuery query, final Result result, final int count) {
+        this.query = query;
+        this.result = result;
+        this.count = count;
+    }
+
+    // results of the host within the query (e.g. several sub pages)
+    public int getCount() {
+        return count;
+    }
+
+    public IndexedQuery getQuery() {
+        return query;
+    }
+
+    public int getRank() {
+        return result.getRank();
+    }
+
+    public Result getResult() {
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Posting [query=" + query.getQuery() + ", market=" + query.getMarket() + ", rank=" + result.getRank() + ", count=" + count + "]";
+    }
+}
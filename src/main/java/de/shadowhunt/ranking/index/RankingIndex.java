@@ -0,0 +1,326 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import de.shadowhunt.ranking.Collector;
+import de.shadowhunt.ranking.data.Result;
+
+// immutable snapshot of all loaded queries with inverted indexes by host (rank sorted posting lists)
+// and by query folder: readers never lock, every reload publishes a new snapshot
+public final class RankingIndex {
+
+    public enum Advertisements {
+        // organic results only
+        EXCLUDE,
+        // best result of organic results and advertisements
+        INCLUDE,
+        // advertisements only
+        ONLY;
+
+        @CheckForNull
+        public static Advertisements parse(final String value) {
+            for (final Advertisements advertisements : values()) {
+                if (advertisements.toString().equals(value)) {
+                    return advertisements;
+                }
+            }
+            return null;
+        }
+
+        boolean accepts(final Result result) {
+            switch (this) {
+                case EXCLUDE:
+                    return !result.isAdvertisement();
+                case ONLY:
+                    return result.isAdvertisement();
+                default:
+                    return true;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    public static final class HostCount {
+
+        private final int count;
+
+        private final String host;
+
+        HostCount(final String host, final int count) {
+            this.host = host;
+            this.count = count;
+        }
+
+        // queries in which the host is ranked within the limit
+        public int getCount() {
+            return count;
+        }
+
+        public String getHost() {
+            return host;
+        }
+    }
+
+    // one posting list per variant of Advertisements (by ordinal), each sorted by rank
+    private static final class HostPostings {
+
+        private final String host;
+
+        private final Posting[][] postings = new Posting[Advertisements.values().length][];
+
+        // ranks of the postings, counting them does not have to touch the postings at all
+        private final int[][] ranks = new int[Advertisements.values().length][];
+
+        HostPostings(final String host) {
+            this.host = host;
+        }
+
+        void put(final Advertisements advertisements, final Posting[] sorted) {
+            final int[] sortedRanks = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                sortedRanks[i] = sorted[i].getRank();
+            }
+            postings[advertisements.ordinal()] = sorted;
+            ranks[advertisements.ordinal()] = sortedRanks;
+        }
+    }
+
+    public static final RankingIndex EMPTY = build(Collections.emptyList(), 0L);
+
+    private static final Comparator<HostCount> MOST_QUERIES_FIRST = Comparator.comparingInt((final HostCount count) -> -count.count).thenComparing(count -> count.host);
+
+    public static RankingIndex build(final Collection<IndexedQuery> queries, final long loaded) {
+        final Map<Advertisements, Map<String, List<Posting>>> postings = new HashMap<>();
+        final Map<String, List<IndexedQuery>> folders = new HashMap<>();
+        int results = 0;
+        for (final IndexedQuery query : queries) {
+            folders.computeIfAbsent(query.getFolder(), folder -> new ArrayList<>()).add(query);
+            results += query.getResults().size();
+            for (final Advertisements advertisements : Advertisements.values()) {
+                post(query, advertisements, postings.computeIfAbsent(advertisements, key -> new HashMap<>()));
+            }
+        }
+
+        int count = 0;
+        final Map<String, HostPostings> hosts = new HashMap<>();
+        for (final Map.Entry<Advertisements, Map<String, List<Posting>>> variant : postings.entrySet()) {
+            for (final Map.Entry<String, List<Posting>> entry : variant.getValue().entrySet()) {
+                final Posting[] sorted = entry.getValue().toArray(new Posting[0]);
+                Arrays.sort(sorted, Posting.RANK_ORDER);
+                hosts.computeIfAbsent(entry.getKey(), HostPostings::new).put(variant.getKey(), sorted);
+                if (variant.getKey() == Advertisements.INCLUDE) {
+                    count += sorted.length;
+                }
+            }
+        }
+        return new RankingIndex(hosts, folders, loaded, count, queries.size(), results);
+    }
+
+    // postings with a rank up to maxRank
+    private static int count(final Posting[] postings, final int[] ranks, final int maxRank, @Nullable final String market) {
+        if (market == null) {
+            // postings are sorted by rank: binary search for the first one behind maxRank
+            int low = 0;
+            int high = ranks.length;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (ranks[middle] <= maxRank) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        int count = 0;
+        for (final Posting posting : postings) {
+            if (posting.getRank() > maxRank) {
+                break;
+            }
+            if (market.equals(posting.getQuery().getMarket())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @CheckForNull
+    static String getHost(final Result result) {
+        final String host = result.getUri().getHost();
+        if (host == null) {
+            return null;
+        }
+        return host.toLowerCase(Locale.ENGLISH);
+    }
+
+    private static void post(final IndexedQuery query, final Advertisements advertisements, final Map<String, List<Posting>> postings) {
+        // results are sorted by rank, so the first hit of a host is its best one
+        final Map<String, Result> best = new LinkedHashMap<>();
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final Result result : query.getResults()) {
+            final String host = getHost(result);
+            if ((host == null) || !advertisements.accepts(result)) {
+                continue;
+            }
+            best.putIfAbsent(host, result);
+            counts.merge(host, 1, Integer::sum);
+        }
+
+        for (final Map.Entry<String, Result> entry : best.entrySet()) {
+            final String host = entry.getKey();
+            postings.computeIfAbsent(host, key -> new ArrayList<>()).add(new Posting(query, entry.getValue(), counts.get(host)));
+        }
+    }
+
+    private final Map<String, List<IndexedQuery>> folders;
+
+    // same as hosts, iterating an array is considerably cheaper for top
+    private final HostPostings[] hostList;
+
+    private final Map<String, HostPostings> hosts;
+
+    private final long loaded;
+
+    private final int postings;
+
+    private final int queries;
+
+    private final int results;
+
+    private RankingIndex(final Map<String, HostPostings> hosts, final Map<String, List<IndexedQuery>> folders, final long loaded, final int postings, final int queries, final int results) {
+        this.hosts = hosts;
+        this.hostList = hosts.values().toArray(new HostPostings[0]);
+        this.folders = folders;
+        this.loaded = loaded;
+        this.postings = postings;
+        this.queries = queries;
+        this.results = results;
+    }
+
+    // queries in which host is ranked up to maxRank, best rank first
+    public List<Posting> findHost(final String host, final int maxRank, final Advertisements advertisements, @Nullable final String market, final int limit) {
+        final HostPostings entry = hosts.get(host.toLowerCase(Locale.ENGLISH));
+        if (entry == null) {
+            return Collections.emptyList();
+        }
+        final Posting[] byRank = entry.postings[advertisements.ordinal()];
+        if (byRank == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Posting> found = new ArrayList<>();
+        for (final Posting posting : byRank) {
+            if ((posting.getRank() > maxRank) || (found.size() >= limit)) {
+                break;
+            }
+            if ((market == null) || market.equals(posting.getQuery().getMarket())) {
+                found.add(posting);
+            }
+        }
+        return found;
+    }
+
+    // query in all (or only the given) market, the query is normalized like its folder name
+    public List<IndexedQuery> findQuery(final String query, @Nullable final String market) {
+        final List<IndexedQuery> candidates = folders.get(Collector.calculateDatabaseName(query.trim()));
+        if (candidates == null) {
+            return Collections.emptyList();
+        }
+
+        final List<IndexedQuery> found = new ArrayList<>();
+        for (final IndexedQuery candidate : candidates) {
+            if ((market == null) || market.equals(candidate.getMarket())) {
+                found.add(candidate);
+            }
+        }
+        return found;
+    }
+
+    public int getHosts() {
+        return hosts.size();
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public int getPostings() {
+        return postings;
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    public int getResults() {
+        return results;
+    }
+
+    // limit hosts that are ranked up to maxRank in the most queries
+    public List<HostCount> top(final int maxRank, final Advertisements advertisements, @Nullable final String market, final int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // the head of the queue is the weakest of the current top hosts
+        final PriorityQueue<HostCount> top = new PriorityQueue<>(limit + 1, MOST_QUERIES_FIRST.reversed());
+        final int variant = advertisements.ordinal();
+        for (final HostPostings entry : hostList) {
+            final Posting[] byRank = entry.postings[variant];
+            if (byRank == null) {
+                continue;
+            }
+            final int count = count(byRank, entry.ranks[variant], maxRank, market);
+            if ((count == 0) || ((top.size() == limit) && (count < top.peek().count))) {
+                continue;
+            }
+
+            final HostCount candidate = new HostCount(entry.host, count);
+            if ((top.size() < limit) || (MOST_QUERIES_FIRST.compare(candidate, top.peek()) < 0)) {
+                top.add(candidate);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+
+        final List<HostCount> sorted = new ArrayList<>(top);
+        sorted.sort(MOST_QUERIES_FIRST);
+        return sorted;
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import de.shadowhunt.ranking.Dumper;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.index.IndexLoader;
+import de.shadowhunt.ranking.index.IndexServer;
+import de.shadowhunt.ranking.index.RankingIndex;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.BuiltinHelpFormatter;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+// dumps queries from the local SerpServer, loads them into the RankingIndex and reports the load time,
+// lookup latency in process and over the http api of the IndexServer, and the time of a hot reload
+public class IndexBenchmark {
+
+    private static final int WARMUP = 10_000;
+
+    private static <T> OptionSpec<T> createOption(final OptionParser parser, final String name, final String description, final Class<T> type, final T defaultValue) {
+        final ArgumentAcceptingOptionSpec<String> optionSpec = parser.accepts(name, description).withRequiredArg();
+        return optionSpec.describedAs(name).ofType(type).defaultsTo(defaultValue);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final OptionParser parser = new OptionParser(false);
+        parser.formatHelpWith(new BuiltinHelpFormatter(160, 2));
+        final OptionSpec<Double> adsOption = createOption(parser, "ads", "advertisement density of the local server", Double.class, 0.3);
+        final OptionSpec<Integer> concurrencyOption = createOption(parser, "concurrency", "requests in flight", Integer.class, 8);
+        final OptionSpec<Integer> hostsOption = createOption(parser, "hosts", "distinct hosts of the local server", Integer.class, 5000);
+        final OptionSpec<Integer> lookupsOption = createOption(parser, "lookups", "lookups per measurement", Integer.class, 100_000);
+        final OptionSpec<Integer> pagesOption = createOption(parser, "pages", "pages per query", Integer.class, 5);
+        final OptionSpec<Integer> queriesOption = createOption(parser, "queries", "number of queries", Integer.class, 1000);
+        final OptionSpec<Void> helpOption = parser.accepts("help", "show this command help").forHelp();
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException e) {
+            parser.printHelpOn(System.err);
+            return;
+        }
+        if (options.has(helpOption)) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
+        final int pages = pagesOption.value(options);
+        final File base = Files.createTempDirectory("google-ranking-index").toFile();
+        final SerpGenerator generator = new SerpGenerator(pages, adsOption.value(options), hostsOption.value(options));
+        try (SerpServer server = new SerpServer(0, generator, 0.0, 0.0, 0.0, 0)) {
+            final Market market = new Market(server.getUri(), Market.DEFAULT_LANGUAGE, null);
+            final IndexBenchmark benchmark = new IndexBenchmark(market, pages, base, hostsOption.value(options), concurrencyOption.value(options));
+            benchmark.run(queriesOption.value(options), lookupsOption.value(options));
+        } finally {
+            FileUtils.deleteQuietly(base);
+        }
+    }
+
+    private static void print(final String name, final long[] latencies, final long duration) {
+        Arrays.sort(latencies);
+        System.out.printf("%-14s %8d %10.0f %9.1f %9.1f %9.1f %9.1f%n", name, latencies.length, latencies.length / (duration / 1e9), //
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(final long[] sorted, final double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e3;
+    }
+
+    private final File base;
+
+    private final int concurrency;
+
+    private final int hosts;
+
+    private final Market market;
+
+    private final int pages;
+
+    public IndexBenchmark(final Market market, final int pages, final File base, final int hosts, final int concurrency) {
+        this.market = market;
+        this.pages = pages;
+        this.base = base;
+        this.hosts = hosts;
+        this.concurrency = concurrency;
+    }
+
+    private void dump(final List<String> queries) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final String query : queries) {
+                futures.add(executor.submit(() -> new Dumper(market, query, pages, base).collectData()));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private long[] measure(final int lookups, final int threads, final Callable<?> lookup) throws Exception {
+        final long[] latencies = new long[lookups];
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < lookups; i += threads) {
+                        final long start = System.nanoTime();
+                        lookup.call();
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return latencies;
+    }
+
+    private String randomHost() {
+        final Random random = ThreadLocalRandom.current();
+        return String.format("www.host-%05d.example", random.nextInt(hosts));
+    }
+
+    private void request(final CloseableHttpClient client, final URI uri) throws IOException {
+        try (CloseableHttpResponse response = client.execute(new HttpGet(uri))) {
+            final int status = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
+            if (status != HttpStatus.SC_OK) {
+                throw new IOException("unexpected status " + status + " for " + uri);
+            }
+        }
+    }
+
+    public void run(final int queries, final int lookups) throws Exception {
+        final List<String> names = new ArrayList<>();
+        for (int i = 0; i < queries; i++) {
+            names.add("index benchmark query " + i);
+        }
+        dump(names);
+
+        final IndexLoader loader = new IndexLoader(Collections.singletonMap(market, base));
+        long start = System.nanoTime();
+        loader.refresh();
+        final RankingIndex index = loader.getIndex();
+        System.out.printf("load: %d queries, %d results, %d hosts, %d postings in %.1f ms%n", index.getQueries(), index.getResults(), index.getHosts(), index.getPostings(), (System.nanoTime() - start) / 1e6);
+
+        System.out.printf("%-14s %8s %10s %9s %9s %9s %9s%n", "lookup", "count", "per s", "p50 us", "p90 us", "p99 us", "max us");
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final Map<String, Callable<?>> measurements = new LinkedHashMap<>();
+        measurements.put("host", () -> loader.getIndex().findHost(randomHost(), 10, RankingIndex.Advertisements.EXCLUDE, null, 100));
+        measurements.put("query", () -> loader.getIndex().findQuery(names.get(ThreadLocalRandom.current().nextInt(queries)), null));
+        measurements.put("top", () -> loader.getIndex().top(10, RankingIndex.Advertisements.EXCLUDE, null, 20));
+        for (final Map.Entry<String, Callable<?>> measurement : measurements.entrySet()) {
+            measure(WARMUP, threads, measurement.getValue());
+            start = System.nanoTime();
+            final long[] latencies = measure(lookups, threads, measurement.getValue());
+            print(measurement.getKey(), latencies, System.nanoTime() - start);
+        }
+
+        try (IndexServer server = new IndexServer(0, loader, TimeUnit.HOURS.toMillis(1), concurrency, null); //
+                CloseableHttpClient client = HttpClients.custom().setMaxConnPerRoute(concurrency).setMaxConnTotal(concurrency).build()) {
+            final Callable<?> http = () -> {
+                request(client, server.getUri().resolve("/hosts?rank=10&ads=exclude&host=" + randomHost()));
+                return null;
+            };
+            final int requests = Math.max(1, lookups / 10);
+            measure(Math.min(WARMUP, requests), concurrency, http);
+            start = System.nanoTime();
+            final long[] latencies = measure(requests, concurrency, http);
+            print("http /hosts", latencies, System.nanoTime() - start);
+        }
+
+        // hot reload after a tenth of the queries were dumped again
+        dump(names.subList(0, Math.max(1, queries / 10)));
+        start = System.nanoTime();
+        final IndexLoader.Refresh refresh = loader.refresh();
+        System.out.printf("reload: %d query folders in %.1f ms (%d failed)%n", refresh.getChanged(), (System.nanoTime() - start) / 1e6, refresh.getFailures().size());
+    }
+}
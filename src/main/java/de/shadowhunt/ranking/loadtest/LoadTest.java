@@ -0,0 +1,278 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.loadtest;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+
+import com.sun.management.ThreadMXBean;
+
+import de.shadowhunt.ranking.Collector;
+import de.shadowhunt.ranking.CrawlGoal;
+import de.shadowhunt.ranking.Deadline;
+import de.shadowhunt.ranking.Dumper;
+import de.shadowhunt.ranking.FetchSettings;
+import de.shadowhunt.ranking.Report;
+import de.shadowhunt.ranking.Timeouts;
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.SortedResultSource;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.BuiltinHelpFormatter;
+import joptsimple.OptionException;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+import joptsimple.OptionSpec;
+
+// drives Dumper -> Collector -> reporters end to end against the local SerpServer
+// (or any other instance) and reports throughput, latency percentiles and
+// CPU time / allocation per stage, summed over the calling thread and the page
+// threads of the query
+public class LoadTest {
+
+    enum Stage {
+        FETCH, PARSE, REPORT
+    }
+
+    private static final class StageStatistics {
+
+        private long allocated;
+
+        private int count;
+
+        private long cpu;
+
+        private long[] latencies = new long[1024];
+
+        synchronized void record(final long latency, final long cpuTime, final long allocation) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+            cpu += cpuTime;
+            allocated += allocation;
+        }
+
+        synchronized void print(final Stage stage) {
+            final long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("%-8s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %10.1f%n", stage, count, //
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0), //
+                    cpu / 1e6, allocated / (1024.0 * 1024.0));
+        }
+
+        private double percentile(final long[] sorted, final double percentile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static <T> OptionSpec<T> createOption(final OptionParser parser, final String name, final String description, final Class<T> type, final T defaultValue) {
+        final ArgumentAcceptingOptionSpec<String> optionSpec = parser.accepts(name, description).withRequiredArg();
+        return optionSpec.describedAs(name).ofType(type).defaultsTo(defaultValue);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final OptionParser parser = new OptionParser(false);
+        parser.formatHelpWith(new BuiltinHelpFormatter(160, 2));
+        final OptionSpec<Double> adsOption = createOption(parser, "ads", "advertisement density of the local server", Double.class, 0.3);
+        final OptionSpec<Integer> concurrencyOption = createOption(parser, "concurrency", "queries in flight", Integer.class, 8);
+        final OptionSpec<Double> errorsOption = createOption(parser, "errors", "error rate of the local server", Double.class, 0.0);
+        final OptionSpec<String> googleOption = parser.accepts("google", "instance to test instead of the local server").withRequiredArg().describedAs("instance");
+        final OptionSpec<Integer> hostsOption = createOption(parser, "hosts", "distinct hosts of the local server", Integer.class, 5000);
+        final OptionSpec<Double> latencyOption = createOption(parser, "latency", "median latency of the local server in milliseconds", Double.class, 50.0);
+        final OptionSpec<Integer> pagesOption = createOption(parser, "pages", "pages per query", Integer.class, 5);
+        final OptionSpec<Integer> parallelPagesOption = createOption(parser, "parallel-pages", "pages fetched concurrently per query", Integer.class, 1);
+        final OptionSpec<Integer> queriesOption = createOption(parser, "queries", "number of queries", Integer.class, 100);
+        final OptionSpec<Double> sigmaOption = createOption(parser, "sigma", "log-normal sigma of the latency of the local server", Double.class, 0.5);
+        final OptionSpec<Integer> throttleOption = createOption(parser, "throttle", "requests per second of the local server (0 = unlimited)", Integer.class, 0);
+        final OptionSpec<Void> helpOption = parser.accepts("help", "show this command help").forHelp();
+
+        final OptionSet options;
+        try {
+            options = parser.parse(args);
+        } catch (final OptionException e) {
+            parser.printHelpOn(System.err);
+            return;
+        }
+        if (options.has(helpOption)) {
+            parser.printHelpOn(System.out);
+            return;
+        }
+
+        final int pages = pagesOption.value(options);
+        final File base = Files.createTempDirectory("google-ranking-load").toFile();
+        final SerpGenerator generator = new SerpGenerator(pages, adsOption.value(options), hostsOption.value(options));
+        try (SerpServer server = new SerpServer(0, generator, latencyOption.value(options), sigmaOption.value(options), errorsOption.value(options), throttleOption.value(options))) {
+            final URI instance = options.has(googleOption) ? URI.create(googleOption.value(options)) : server.getUri();
+            final LoadTest test = new LoadTest(new Market(instance, Market.DEFAULT_LANGUAGE, null), pages, parallelPagesOption.value(options), base);
+            test.run(queriesOption.value(options), concurrencyOption.value(options));
+        } finally {
+            FileUtils.deleteQuietly(base);
+        }
+    }
+
+    private final File base;
+
+    private final Catalog catalog;
+
+    private final AtomicInteger failed = new AtomicInteger();
+
+    private final Market market;
+
+    private final int pages;
+
+    private final AtomicInteger pagesFetched = new AtomicInteger();
+
+    private final int parallelPages;
+
+    private final Report report = new Report(Collections.emptySet());
+
+    private final Map<Stage, StageStatistics> statistics = new EnumMap<>(Stage.class);
+
+    public LoadTest(final Market market, final int pages, final int parallelPages, final File base) {
+        this.market = market;
+        this.pages = pages;
+        this.parallelPages = parallelPages;
+        this.base = base;
+        this.catalog = Catalog.shared(base);
+        for (final Stage stage : Stage.values()) {
+            statistics.put(stage, new StageStatistics());
+        }
+    }
+
+    private <T> T measure(final Stage stage, final Callable<T> callable) throws Exception {
+        return measure(stage, Collections.emptyList(), callable);
+    }
+
+    // helpers are started by the stage and still alive afterwards, their totals belong to the stage
+    private <T> T measure(final Stage stage, final Collection<Thread> helpers, final Callable<T> callable) throws Exception {
+        final long thread = Thread.currentThread().getId();
+        final long allocated = THREADS.getThreadAllocatedBytes(thread);
+        final long cpu = THREADS.getCurrentThreadCpuTime();
+        final long start = System.nanoTime();
+        try {
+            return callable.call();
+        } finally {
+            final long latency = System.nanoTime() - start;
+            long cpuTime = THREADS.getCurrentThreadCpuTime() - cpu;
+            long allocation = THREADS.getThreadAllocatedBytes(thread) - allocated;
+            for (final Thread helper : helpers) {
+                // -1: thread has already terminated
+                cpuTime += Math.max(0L, THREADS.getThreadCpuTime(helper.getId()));
+                allocation += Math.max(0L, THREADS.getThreadAllocatedBytes(helper.getId()));
+            }
+            statistics.get(stage).record(latency, cpuTime, allocation);
+        }
+    }
+
+    private void print(final int queries, final long duration) {
+        final double seconds = duration / 1e9;
+        System.out.printf("queries: %d in %.2f s (%.1f queries/s), pages: %d, failed: %d%n", queries, seconds, queries / seconds, pagesFetched.get(), failed.get());
+        System.out.printf("%-8s %8s %9s %9s %9s %9s %9s %10s%n", "stage", "count", "p50 ms", "p90 ms", "p99 ms", "max ms", "cpu ms", "alloc MB");
+        for (final Stage stage : Stage.values()) {
+            statistics.get(stage).print(stage);
+        }
+
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("heap used: %.1f MB (committed: %.1f MB)%n", heap.getUsed() / (1024.0 * 1024.0), heap.getCommitted() / (1024.0 * 1024.0));
+    }
+
+    public void run(final int queries, final int concurrency) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < queries; i++) {
+                final String query = "load test query " + i;
+                futures.add(executor.submit(() -> {
+                    runQuery(query);
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        print(queries, System.nanoTime() - start);
+    }
+
+    private void runQuery(final String query) {
+        try {
+            // page threads of the query are only shut down after they have been measured
+            final List<Thread> helpers = new CopyOnWriteArrayList<>();
+            final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelPages, pages - 1)), runnable -> {
+                final Thread thread = new Thread(runnable, "load-test-pages");
+                helpers.add(thread);
+                return thread;
+            });
+            try {
+                measure(Stage.FETCH, helpers, () -> {
+                    final FetchSettings settings = new FetchSettings(pages, parallelPages, Timeouts.DEFAULT, Deadline.NONE, CrawlGoal.NONE);
+                    new Dumper(market, query, base, settings, catalog, null, executor).collectData();
+                    return null;
+                });
+            } finally {
+                executor.shutdownNow();
+            }
+
+            final Collector collector = new Collector(base, query);
+            final SortedSet<Result> data = measure(Stage.PARSE, collector::parseData);
+            if (!data.isEmpty()) {
+                pagesFetched.addAndGet(data.last().getPage());
+            }
+
+            final File folder = new File(base, Collector.calculateDatabaseName(query));
+            measure(Stage.REPORT, () -> {
+                report.write(folder, market, query, pages, new SortedResultSource(data, collector.getTruncated()));
+                return null;
+            });
+        } catch (final Exception e) {
+            failed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.loadtest;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang3.StringUtils;
+
+// generates result pages in the markup Page.parse understands: organic results are
+// <a href><h3/><div><cite/></div></a>, advertisements carry an "Anzeige" sibling
+// and data-preconnect-urls, further pages are linked with class="pn"
+public class SerpGenerator {
+
+    private static final int MAX_ADVERTISEMENTS = 4;
+
+    private static final int RESULTS_PER_PAGE = 10;
+
+    private static String encode(final String value) {
+        try {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+        } catch (final UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String escape(final String value) {
+        return StringUtils.replaceEach(value, new String[] { "&", "<", ">", "\"" }, new String[] { "&amp;", "&lt;", "&gt;", "&quot;" });
+    }
+
+    private final double advertisementDensity;
+
+    private final int hosts;
+
+    private final int pages;
+
+    public SerpGenerator(final int pages, final double advertisementDensity, final int hosts) {
+        this.pages = pages;
+        this.advertisementDensity = advertisementDensity;
+        this.hosts = hosts;
+    }
+
+    private void appendAdvertisement(final StringBuilder html, final String host, final String path) {
+        html.append("<div class=\"ads-ad\"><a data-preconnect-urls=\"https://").append(host).append(path);
+        html.append(",https://www.googleadservices.com/\" href=\"/aclk?sa=l&amp;ai=").append(host).append("\">");
+        html.append("<h3>").append(host).append("</h3><div><span>Anzeige</span><cite>").append(host).append(path).append("</cite></div></a></div>\n");
+    }
+
+    private void appendOrganic(final StringBuilder html, final String host, final String path) {
+        html.append("<div class=\"g\"><div class=\"r\"><a href=\"https://").append(host).append(path).append("\">");
+        html.append("<h3>").append(host).append("</h3><br><div><cite>").append(host).append(path).append("</cite></div></a></div></div>\n");
+    }
+
+    @CheckForNull
+    public String generate(final String query, final int start) {
+        final int page = start / RESULTS_PER_PAGE;
+        if ((start < 0) || (page >= pages)) {
+            return null;
+        }
+
+        // deterministic per query and page, so repeated crawls see identical rankings
+        final Random random = new Random((31L * query.hashCode()) + page);
+        final String slug = "/" + encode(query) + "/";
+
+        final StringBuilder html = new StringBuilder(16 * 1024);
+        html.append("<!DOCTYPE html>\n<html lang=\"de\">\n<head>\n<meta charset=\"UTF-8\">\n");
+        html.append("<title>").append(escape(query)).append(" - Google-Suche</title>\n</head>\n<body>\n<div id=\"search\">\n");
+
+        for (int i = 0; i < MAX_ADVERTISEMENTS; i++) {
+            if (random.nextDouble() < advertisementDensity) {
+                appendAdvertisement(html, pickHost(random), slug + "ad-" + page + "-" + i);
+            }
+        }
+        for (int i = 0; i < RESULTS_PER_PAGE; i++) {
+            appendOrganic(html, pickHost(random), slug + (start + i + 1));
+        }
+
+        html.append("</div>\n<div id=\"foot\">\n");
+        if ((page + 1) < pages) {
+            final int next = start + RESULTS_PER_PAGE;
+            html.append("<a class=\"pn\" href=\"/search?q=").append(encode(query)).append("&amp;start=").append(next).append("\">Weiter</a>\n");
+        }
+        html.append("</div>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    private String pickHost(final Random random) {
+        // skewed towards a few popular hosts, like real result pages
+        final double skew = Math.pow(random.nextDouble(), 3);
+        final int host = (int) (skew * hosts);
+        return String.format("www.host-%05d.example", host);
+    }
+}
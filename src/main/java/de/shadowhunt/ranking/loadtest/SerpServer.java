@@ -0,0 +1,168 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// local stand-in for the search endpoint: configurable latency (log-normal),
+// error rate (503) and throttling (token bucket, 429)
+// start it with -Dsun.net.httpserver.nodelay=true, otherwise every response pays for nagle + delayed ack
+// on top of the configured latency
+public class SerpServer implements AutoCloseable {
+
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    public static void main(final String[] args) throws Exception {
+        final int port = (args.length > 0) ? Integer.parseInt(args[0]) : 8080;
+        final SerpGenerator generator = new SerpGenerator(10, 0.3, 5000);
+        try (SerpServer server = new SerpServer(port, generator, 50, 0.5, 0.0, 0)) {
+            System.out.println("serving " + server.getUri());
+            Thread.currentThread().join();
+        }
+    }
+
+    private long available;
+
+    private final double errorRate;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final SerpGenerator generator;
+
+    private long lastRefill = System.nanoTime();
+
+    private final double latencyMedian;
+
+    private final double latencySigma;
+
+    private final HttpServer server;
+
+    private final int throttle;
+
+    // throttle: maximum requests per second (0 = unlimited)
+    public SerpServer(final int port, final SerpGenerator generator, final double latencyMedian, final double latencySigma, final double errorRate, final int throttle) throws IOException {
+        this.generator = generator;
+        this.latencyMedian = latencyMedian;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+        this.throttle = throttle;
+        this.available = throttle;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/search", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private synchronized boolean acquire() {
+        if (throttle <= 0) {
+            return true;
+        }
+
+        final long now = System.nanoTime();
+        final long refill = (TimeUnit.NANOSECONDS.toMillis(now - lastRefill) * throttle) / 1000;
+        if (refill > 0) {
+            available = Math.min(throttle, available + refill);
+            lastRefill = now;
+        }
+        if (available > 0) {
+            available--;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public URI getUri() {
+        final InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            // throttled requests are rejected right away, like a rate limiter in front of the search
+            if (!acquire()) {
+                respond(exchange, SC_TOO_MANY_REQUESTS, "throttled");
+                return;
+            }
+
+            final Random random = ThreadLocalRandom.current();
+            if (latencyMedian > 0) {
+                final double latency = latencyMedian * Math.exp(latencySigma * random.nextGaussian());
+                Thread.sleep((long) latency);
+            }
+            if (random.nextDouble() < errorRate) {
+                respond(exchange, HttpStatus.SC_SERVICE_UNAVAILABLE, "unavailable");
+                return;
+            }
+
+            String query = "";
+            int start = 0;
+            final List<NameValuePair> parameters = URLEncodedUtils.parse(exchange.getRequestURI(), StandardCharsets.UTF_8);
+            for (final NameValuePair parameter : parameters) {
+                if ("q".equals(parameter.getName())) {
+                    query = parameter.getValue();
+                } else if ("start".equals(parameter.getName())) {
+                    start = Integer.parseInt(parameter.getValue());
+                }
+            }
+
+            final String html = generator.generate(query, start);
+            if (html == null) {
+                respond(exchange, HttpStatus.SC_NOT_FOUND, "no such page");
+                return;
+            }
+            respond(exchange, HttpStatus.SC_OK, html);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] raw = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        exchange.sendResponseHeaders(status, raw.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(raw);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+// stand-in for jdk.jfr.Event, which is not part of java 8: the events are never enabled and nothing
+// is recorded; on java 11 and later the multi-release jar loads the real events from src/main/java11
+abstract class AbstractEvent {
+
+    public final void begin() {
+        // not recorded
+    }
+
+    public final void commit() {
+        // not recorded
+    }
+
+    public final void end() {
+        // not recorded
+    }
+
+    public final boolean isEnabled() {
+        return false;
+    }
+
+    public final boolean shouldCommit() {
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import javax.annotation.CheckForNull;
+
+// the flight recorder needs java 11 or later, where the multi-release jar loads the real
+// recording from src/main/java11
+public final class FlightRecording implements Closeable {
+
+    // null: flight recorder is not available in this jvm
+    @CheckForNull
+    public static FlightRecording start(final File folder, final long threshold) throws IOException {
+        return null;
+    }
+
+    private FlightRecording() {
+        // never started
+    }
+
+    @Override
+    public void close() throws IOException {
+        // never started
+    }
+}
@@ -0,0 +1,38 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+// extracting the results of one page (including reading the file, if not already parsed)
+public final class ParseEvent extends AbstractEvent {
+
+    public void setBytes(final long bytes) {
+        // not recorded
+    }
+
+    public void setFile(final String file) {
+        // not recorded
+    }
+
+    public void setPage(final int page) {
+        // not recorded
+    }
+
+    public void setResults(final int results) {
+        // not recorded
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public final class Lease {
+
+    private final Path file;
+
+    private volatile boolean lost;
+
+    private final String query;
+
+    private final String worker;
+
+    Lease(final Path file, final String query, final String worker) {
+        this.file = file;
+        this.query = query;
+        this.worker = worker;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getWorker() {
+        return worker;
+    }
+
+    public boolean heartbeat() {
+        if (lost) {
+            return false;
+        }
+
+        try {
+            final FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            Files.setLastModifiedTime(file, now);
+            return true;
+        } catch (final IOException e) {
+            // lease file was reclaimed by another worker (or the share is gone)
+            lost = true;
+            return false;
+        }
+    }
+
+    public boolean isValid() {
+        return !lost;
+    }
+
+    @Override
+    public String toString() {
+        return "Lease [query=" + query + ", worker=" + worker + ", lost=" + lost + "]";
+    }
+}
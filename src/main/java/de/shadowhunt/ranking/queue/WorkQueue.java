@@ -0,0 +1,178 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import javax.annotation.CheckForNull;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.shadowhunt.ranking.Collector;
+
+// shared file system work queue, all state transitions are atomic renames:
+// .queue/pending/<query> -> .queue/leased/<query>#<worker> -> (deleted | .queue/failed/<query>)
+public class WorkQueue {
+
+    private static final char OWNER_SEPARATOR = '#';
+
+    private static boolean isVisible(final Path file) {
+        return !file.getFileName().toString().startsWith(".");
+    }
+
+    private final Path failed;
+
+    private final Path leased;
+
+    private final long leaseTimeout;
+
+    private final Path pending;
+
+    private final Path root;
+
+    public WorkQueue(final File base, final long leaseTimeout) throws IOException {
+        this.root = base.toPath().resolve(".queue");
+        this.failed = Files.createDirectories(root.resolve("failed"));
+        this.leased = Files.createDirectories(root.resolve("leased"));
+        this.pending = Files.createDirectories(root.resolve("pending"));
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    @CheckForNull
+    public Lease claim(final String worker) throws IOException {
+        final String owner = StringUtils.replaceChars(worker, OWNER_SEPARATOR, '_');
+        try (DirectoryStream<Path> candidates = Files.newDirectoryStream(pending, WorkQueue::isVisible)) {
+            for (final Path candidate : candidates) {
+                final String name = candidate.getFileName().toString();
+                final Path target = leased.resolve(name + OWNER_SEPARATOR + owner);
+                try {
+                    Files.move(candidate, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final NoSuchFileException e) {
+                    // claimed by another worker
+                    continue;
+                }
+
+                final String query;
+                try {
+                    query = readQuery(target);
+                } catch (final NoSuchFileException e) {
+                    // reclaimed and claimed by another worker before we could read it
+                    continue;
+                }
+                final Lease lease = new Lease(target, query, owner);
+                // rename keeps the old modification time, the lease is only ours
+                // if it has not been reclaimed before the first heartbeat
+                if (lease.heartbeat()) {
+                    return lease;
+                }
+            }
+        }
+        return null;
+    }
+
+    public void complete(final Lease lease) throws IOException {
+        Files.deleteIfExists(lease.getFile());
+    }
+
+    public boolean enqueue(final String query) throws IOException {
+        final String name = Collector.calculateDatabaseName(query);
+        final Path target = pending.resolve(name);
+        if (Files.exists(target) || isLeased(name)) {
+            return false;
+        }
+
+        final Path temp = root.resolve("." + name + "-" + UUID.randomUUID());
+        Files.write(temp, query.getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    public void fail(final Lease lease) throws IOException {
+        final String name = StringUtils.substringBeforeLast(lease.getFile().getFileName().toString(), String.valueOf(OWNER_SEPARATOR));
+        try {
+            Files.move(lease.getFile(), failed.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        } catch (final NoSuchFileException e) {
+            // lease was already reclaimed
+        }
+    }
+
+    public long getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    private boolean isLeased(final String name) throws IOException {
+        // names may contain glob characters, match the prefix literally
+        final String prefix = name + OWNER_SEPARATOR;
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(leased, lease -> lease.getFileName().toString().startsWith(prefix))) {
+            return leases.iterator().hasNext();
+        }
+    }
+
+    public int pending() throws IOException {
+        try (Stream<Path> candidates = Files.list(pending)) {
+            return (int) candidates.filter(WorkQueue::isVisible).count();
+        }
+    }
+
+    private String readQuery(final Path file) throws IOException {
+        final byte[] raw = Files.readAllBytes(file);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    public int reclaimExpired() throws IOException {
+        final long expired = System.currentTimeMillis() - leaseTimeout;
+
+        int count = 0;
+        try (DirectoryStream<Path> leases = Files.newDirectoryStream(leased, WorkQueue::isVisible)) {
+            for (final Path lease : leases) {
+                final FileTime heartbeat;
+                try {
+                    heartbeat = Files.getLastModifiedTime(lease);
+                } catch (final NoSuchFileException e) {
+                    continue;
+                }
+                if (heartbeat.toMillis() >= expired) {
+                    continue;
+                }
+
+                final String name = StringUtils.substringBeforeLast(lease.getFileName().toString(), String.valueOf(OWNER_SEPARATOR));
+                try {
+                    Files.move(lease, pending.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                    count++;
+                } catch (final NoSuchFileException e) {
+                    // completed or reclaimed concurrently
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.shadowhunt.ranking.Deadline;
+
+public class Worker {
+
+    @FunctionalInterface
+    public interface Task {
+
+        void process(String query) throws Exception;
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Worker.class);
+
+    private final Deadline deadline;
+
+    private final String id;
+
+    private final WorkQueue queue;
+
+    private final Task task;
+
+    public Worker(final String id, final WorkQueue queue, final Task task) {
+        this(id, queue, task, Deadline.NONE);
+    }
+
+    // no further queries are claimed once the deadline has passed
+    public Worker(final String id, final WorkQueue queue, final Task task, final Deadline deadline) {
+        this.id = id;
+        this.queue = queue;
+        this.task = task;
+        this.deadline = deadline;
+    }
+
+    private void process(final Lease lease, final ScheduledExecutorService heartbeat) throws Exception {
+        final long period = Math.max(1L, queue.getLeaseTimeout() / 3);
+        final ScheduledFuture<?> beat = heartbeat.scheduleAtFixedRate(lease::heartbeat, period, period, TimeUnit.MILLISECONDS);
+        try {
+            task.process(lease.getQuery());
+        } catch (final Exception e) {
+            LOGGER.error("{}: processing '{}' failed", id, lease.getQuery(), e);
+            queue.fail(lease);
+            return;
+        } finally {
+            beat.cancel(false);
+        }
+
+        if (lease.isValid()) {
+            queue.complete(lease);
+        }
+    }
+
+    public int run() throws Exception {
+        final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, id + "-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int processed = 0;
+        try {
+            while (!deadline.isExpired()) {
+                queue.reclaimExpired();
+                final Lease lease = queue.claim(id);
+                if (lease == null) {
+                    return processed;
+                }
+                process(lease, heartbeat);
+                processed++;
+            }
+            return processed;
+        } finally {
+            heartbeat.shutdownNow();
+        }
+    }
+}
@@ -17,19 +17,29 @@
  */
 package de.shadowhunt.ranking.report;
 
-import java.io.PrintWriter;
 import java.util.Collections;
-import java.util.SortedSet;
+import java.util.Set;
 
 import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.Summary;
 
+// reporters consume the results in a single pass in rank order, several
+// reporters can share one pass (see ReportGenerator)
 public abstract class AbstractReporter {
 
-    protected final SortedSet<Result> data;
+    public void begin(final Summary summary, final ReportWriter writer) {
+        // nothing to do
+    }
+
+    public void end(final ReportWriter writer) {
+        // nothing to do
+    }
 
-    public AbstractReporter(final SortedSet<Result> data) {
-        this.data = Collections.unmodifiableSortedSet(data);
+    public Set<Summary.Value> getRequiredSummary() {
+        return Collections.emptySet();
     }
 
-    public abstract void generate(PrintWriter writer);
+    public void visit(final Result result, final ReportWriter writer) {
+        // nothing to do
+    }
 }
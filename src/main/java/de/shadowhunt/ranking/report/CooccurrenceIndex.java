@@ -0,0 +1,231 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// hosts get dense ids, every host keeps the ids of the queries it appears in,
+// once on any page and once on the first page (rank bucket); overlaps are computed on bitsets
+// over the query ids, which are only materialized for the hosts that are compared
+public class CooccurrenceIndex {
+
+    public static final class Overlap {
+
+        private final int first;
+
+        private final int second;
+
+        private final int shared;
+
+        // shared queries / queries of either host, in 1/1000
+        private final int jaccard;
+
+        Overlap(final int first, final int second, final int shared, final int union) {
+            this.first = first;
+            this.second = second;
+            this.shared = shared;
+            this.jaccard = (union == 0) ? 0 : (int) ((shared * 1000L) / union);
+        }
+
+        public int getFirst() {
+            return first;
+        }
+
+        public int getJaccard() {
+            return jaccard;
+        }
+
+        public int getSecond() {
+            return second;
+        }
+
+        public int getShared() {
+            return shared;
+        }
+    }
+
+    // growable int list, far smaller than a set of boxed query ids
+    private static final class Occurrences {
+
+        private int[] queries = new int[4];
+
+        private int size;
+
+        void add(final int query) {
+            if (size == queries.length) {
+                queries = Arrays.copyOf(queries, size + (size >> 1) + 1);
+            }
+            queries[size++] = query;
+        }
+    }
+
+    public static final int FIRST_PAGE = 10;
+
+    private static final Comparator<Overlap> JACCARD = Comparator.comparingInt(Overlap::getJaccard).thenComparingInt(Overlap::getShared).reversed();
+
+    static int intersection(final long[] first, final long[] second) {
+        int count = 0;
+        for (int i = 0; i < first.length; i++) {
+            count += Long.bitCount(first[i] & second[i]);
+        }
+        return count;
+    }
+
+    private final List<Occurrences> all = new ArrayList<>();
+
+    private final List<Occurrences> firstPage = new ArrayList<>();
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private final List<String> names = new ArrayList<>();
+
+    private int queries;
+
+    // bestRanks: organic rank of every host within one query
+    public synchronized void add(final Map<String, Integer> bestRanks) {
+        final int query = queries++;
+        for (final Map.Entry<String, Integer> entry : bestRanks.entrySet()) {
+            final int id = intern(entry.getKey());
+            all.get(id).add(query);
+            if (entry.getValue() <= FIRST_PAGE) {
+                firstPage.get(id).add(query);
+            }
+        }
+    }
+
+    public long[] bitset(final int id, final boolean onFirstPage) {
+        final Occurrences occurrences = getOccurrences(id, onFirstPage);
+        final long[] words = new long[(queries + 63) >>> 6];
+        for (int i = 0; i < occurrences.size; i++) {
+            final int query = occurrences.queries[i];
+            words[query >>> 6] |= 1L << query;
+        }
+        return words;
+    }
+
+    public int getCount(final int id, final boolean onFirstPage) {
+        return getOccurrences(id, onFirstPage).size;
+    }
+
+    public int getHostCount() {
+        return names.size();
+    }
+
+    public int getId(final String host) {
+        final Integer id = ids.get(host);
+        return (id == null) ? -1 : id;
+    }
+
+    public String getName(final int id) {
+        return names.get(id);
+    }
+
+    private Occurrences getOccurrences(final int id, final boolean onFirstPage) {
+        return onFirstPage ? firstPage.get(id) : all.get(id);
+    }
+
+    public int getQueryCount() {
+        return queries;
+    }
+
+    private int intern(final String host) {
+        final Integer existing = ids.get(host);
+        if (existing != null) {
+            return existing;
+        }
+
+        final int id = names.size();
+        ids.put(host, id);
+        names.add(host);
+        all.add(new Occurrences());
+        firstPage.add(new Occurrences());
+        return id;
+    }
+
+    // hosts sharing the most queries (relative to their size) with the given host, compared with
+    // every other host: the sparse query list of each candidate probes the bitset of the host
+    public List<Overlap> overlaps(final int id, final boolean onFirstPage, final int limit) {
+        final long[] words = bitset(id, onFirstPage);
+        final int count = getCount(id, onFirstPage);
+        return IntStream.range(0, names.size()).parallel() //
+                .filter(other -> other != id) //
+                .mapToObj(other -> {
+                    final Occurrences occurrences = getOccurrences(other, onFirstPage);
+                    int shared = 0;
+                    for (int i = 0; i < occurrences.size; i++) {
+                        final int query = occurrences.queries[i];
+                        if ((words[query >>> 6] & (1L << query)) != 0L) {
+                            shared++;
+                        }
+                    }
+                    return (shared == 0) ? null : new Overlap(id, other, shared, (count + occurrences.size) - shared);
+                }) //
+                .filter(Objects::nonNull) //
+                .sorted(JACCARD) //
+                .limit(limit) //
+                .collect(Collectors.toList());
+    }
+
+    // all pairs of the given hosts on dense bitsets, rows are processed in parallel
+    public List<Overlap> pairs(final int[] hosts, final boolean onFirstPage, final int limit) {
+        final long[][] bitsets = new long[hosts.length][];
+        IntStream.range(0, hosts.length).parallel().forEach(i -> bitsets[i] = bitset(hosts[i], onFirstPage));
+
+        return IntStream.range(0, hosts.length).parallel() //
+                .boxed() //
+                .flatMap(i -> {
+                    final List<Overlap> row = new ArrayList<>();
+                    final int count = getCount(hosts[i], onFirstPage);
+                    for (int j = i + 1; j < hosts.length; j++) {
+                        final int shared = intersection(bitsets[i], bitsets[j]);
+                        if (shared > 0) {
+                            row.add(new Overlap(hosts[i], hosts[j], shared, (count + getCount(hosts[j], onFirstPage)) - shared));
+                        }
+                    }
+                    return row.stream();
+                }) //
+                .sorted(JACCARD) //
+                .limit(limit) //
+                .collect(Collectors.toList());
+    }
+
+    // ids of the hosts appearing in the most queries
+    public int[] top(final int limit) {
+        final List<Integer> sorted = new ArrayList<>(names.size());
+        for (int id = 0; id < names.size(); id++) {
+            sorted.add(id);
+        }
+        Collections.sort(sorted, Comparator.comparingInt((Integer id) -> all.get(id).size).reversed().thenComparing(id -> names.get(id)));
+
+        final int size = Math.min(limit, sorted.size());
+        final int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = sorted.get(i);
+        }
+        return result;
+    }
+}
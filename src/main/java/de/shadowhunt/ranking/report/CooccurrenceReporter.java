@@ -0,0 +1,133 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.ResultSource;
+import de.shadowhunt.ranking.data.ResultVisitor;
+import de.shadowhunt.ranking.data.Summary;
+
+// which competitors show up together with the tracked hosts across all queries
+public class CooccurrenceReporter {
+
+    // one pass over the results of one query
+    private class QueryCollector implements ResultVisitor {
+
+        private final Map<String, Integer> bestRanks = new HashMap<>();
+
+        private int rank;
+
+        @Override
+        public void begin(final Summary summary) {
+            // nothing to do
+        }
+
+        @Override
+        public void end() {
+            index.add(bestRanks);
+        }
+
+        @Override
+        public void visit(final Result result) {
+            if (result.isAdvertisement()) {
+                return;
+            }
+            // results are sorted by rank, so the first hit is the best one
+            bestRanks.putIfAbsent(result.getUri().getHost(), ++rank);
+        }
+    }
+
+    private static final int COMPETITORS = 20;
+
+    private static final Layout HOSTS = Layout.compile("        Hosts: %d%n");
+
+    private static final Layout OVERLAP = Layout.compile("   [%02d] %-60s %7d %7d   %d.%03d%n");
+
+    private static final Layout OVERLAP_HEADER = Layout.compile("        %-60s %7s %7s %7s%n");
+
+    private static final Layout PAIR = Layout.compile("   %-45s %-45s %7d   %d.%03d%n");
+
+    private static final int PAIRS = 50;
+
+    private static final Layout QUERIES = Layout.compile("      Queries: %d%n");
+
+    private static final Layout TRACKED = Layout.compile("*%s (%d queries, %d on page 1)%n");
+
+    private final Set<String> hosts;
+
+    private final CooccurrenceIndex index = new CooccurrenceIndex();
+
+    private final int topHosts;
+
+    public CooccurrenceReporter(final Set<String> hosts, final int topHosts) {
+        this.hosts = hosts;
+        this.topHosts = topHosts;
+    }
+
+    // may be called concurrently for different queries
+    public void collect(final ResultSource source) throws IOException {
+        source.accept(Collections.emptySet(), new QueryCollector());
+    }
+
+    public void generate(final ReportWriter writer) {
+        writer.println("Co-occurrence");
+        writer.println("=============");
+        writer.format(QUERIES).arg(index.getQueryCount());
+        writer.format(HOSTS).arg(index.getHostCount());
+        writer.println();
+
+        for (final String host : new TreeSet<>(hosts)) {
+            final int id = index.getId(host);
+            if (id < 0) {
+                continue;
+            }
+
+            writer.format(TRACKED).arg(host).arg(index.getCount(id, false)).arg(index.getCount(id, true));
+            writer.format(OVERLAP_HEADER).arg("Competitor").arg("shared").arg("page 1").arg("jaccard");
+            final List<CooccurrenceIndex.Overlap> overlaps = index.overlaps(id, false, COMPETITORS);
+            final Map<Integer, Integer> firstPage = new HashMap<>();
+            for (final CooccurrenceIndex.Overlap overlap : index.overlaps(id, true, Integer.MAX_VALUE)) {
+                firstPage.put(overlap.getSecond(), overlap.getShared());
+            }
+            for (int i = 0; i < overlaps.size(); i++) {
+                final CooccurrenceIndex.Overlap overlap = overlaps.get(i);
+                final int onFirstPage = firstPage.getOrDefault(overlap.getSecond(), 0);
+                writer.format(OVERLAP).arg(i + 1).arg(index.getName(overlap.getSecond())).arg(overlap.getShared()).arg(onFirstPage);
+                writer.arg(overlap.getJaccard() / 1000).arg(overlap.getJaccard() % 1000);
+            }
+            writer.println();
+        }
+
+        final int[] top = index.top(topHosts);
+        writer.println("Pairs of the top hosts");
+        writer.println("======================");
+        for (final CooccurrenceIndex.Overlap pair : index.pairs(top, false, PAIRS)) {
+            writer.format(PAIR).arg(index.getName(pair.getFirst())).arg(index.getName(pair.getSecond())).arg(pair.getShared());
+            writer.arg(pair.getJaccard() / 1000).arg(pair.getJaccard() % 1000);
+        }
+        writer.println();
+    }
+}
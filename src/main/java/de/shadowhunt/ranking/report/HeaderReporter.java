@@ -17,54 +17,109 @@
  */
 package de.shadowhunt.ranking.report;
 
-import java.io.PrintWriter;
-import java.net.URI;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import de.shadowhunt.ranking.data.Result;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Summary;
 
 public class HeaderReporter extends AbstractReporter {
 
-    private final URI google;
+    private static final Layout ANALYSIS_DATE = Layout.compile("Analysis Date: %s%n");
+
+    private static final Layout HOST = Layout.compile("    - %s%n");
+
+    private static final Layout MARKET = Layout.compile("       Market: %s%n");
+
+    private static final Layout PAGES = Layout.compile("        Pages: %d / %d%n");
+
+    private static final Layout QUERY = Layout.compile("        Query: %s%n");
+
+    private static final Layout QUERY_DATE = Layout.compile("   Query Date: %s%n");
+
+    private static final Layout RESULTS = Layout.compile("      Results: %d%n");
+
+    private static final Layout STOPPED = Layout.compile("      Stopped: %s%n");
+
+    private static final Layout TRUNCATED = Layout.compile("    Truncated: page %s (too large or malformed, later results are missing)%n");
+
+    private static final Layout URL = Layout.compile("          URL: %s%n");
+
+    private final boolean complete;
 
     private final SortedSet<String> hosts = new TreeSet<>();
 
+    private final Market market;
+
     private final String query;
 
     private final Date queryDate;
 
     private final int requestedMaxPages;
 
-    public HeaderReporter(final URI google, final String query, final int requestedMaxPages, final Date queryDate, final Set<String> hosts, final SortedSet<Result> data) {
-        super(data);
-        this.google = google;
+    @CheckForNull
+    private final String stopped;
+
+    public HeaderReporter(final Market market, final String query, final int requestedMaxPages, final Date queryDate, final Set<String> hosts) {
+        this(market, query, requestedMaxPages, queryDate, hosts, true);
+    }
+
+    // complete: false if a timeout stopped fetching before the last page
+    public HeaderReporter(final Market market, final String query, final int requestedMaxPages, final Date queryDate, final Set<String> hosts, final boolean complete) {
+        this(market, query, requestedMaxPages, queryDate, hosts, complete, null);
+    }
+
+    // stopped: why fetching stopped before the maximum number of pages (null: it did not)
+    public HeaderReporter(final Market market, final String query, final int requestedMaxPages, final Date queryDate, final Set<String> hosts, final boolean complete, @Nullable final String stopped) {
         this.hosts.addAll(hosts);
+        this.market = market;
         this.query = query;
         this.queryDate = new Date(queryDate.getTime());
         this.requestedMaxPages = requestedMaxPages;
+        this.complete = complete;
+        this.stopped = stopped;
     }
 
     @Override
-    public void generate(final PrintWriter writer) {
+    public void begin(final Summary summary, final ReportWriter writer) {
         writer.println("Overview");
         writer.println("========");
-        writer.printf("          URL: %s%n", google);
-        writer.printf("        Query: %s%n", query);
-        writer.printf("   Query Date: %s%n", queryDate);
-        writer.printf("Analysis Date: %s%n", new Date());
-        writer.printf("      Results: %d%n", data.size());
-        final Result last = data.last();
-        writer.printf("        Pages: %d / %d%n", last.getPage(), requestedMaxPages);
+        writer.format(URL).arg(market.getInstance());
+        writer.format(MARKET).arg(market.getTag());
+        writer.format(QUERY).arg(query);
+        writer.format(QUERY_DATE).arg(queryDate);
+        writer.format(ANALYSIS_DATE).arg(new Date());
+        writer.format(RESULTS).arg(summary.getCount());
+        writer.format(PAGES).arg(summary.getLastPage()).arg(requestedMaxPages);
+        if (!complete) {
+            writer.println("       Status: INCOMPLETE (timeout, results are partial)");
+        }
+        if (stopped != null) {
+            writer.format(STOPPED).arg(stopped);
+        }
+        if (!summary.getTruncated().isEmpty()) {
+            writer.format(TRUNCATED).arg(StringUtils.join(summary.getTruncated(), ", "));
+        }
         if (!hosts.isEmpty()) {
             writer.println(" Host markers:");
             for (final String host : hosts) {
-                writer.printf("    - %s%n", host);
+                writer.format(HOST).arg(host);
             }
         }
         writer.println();
     }
 
+    @Override
+    public Set<Summary.Value> getRequiredSummary() {
+        return EnumSet.of(Summary.Value.COUNT, Summary.Value.LAST_PAGE, Summary.Value.TRUNCATED);
+    }
+
 }
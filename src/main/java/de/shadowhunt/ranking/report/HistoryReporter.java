@@ -0,0 +1,148 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.Summary;
+import de.shadowhunt.ranking.history.HostSketch;
+import de.shadowhunt.ranking.history.QuerySketch;
+
+// rank distribution of the hosts over all recorded runs of the query, the current
+// run is added to the persisted sketches once (identified by its fetch time)
+public class HistoryReporter extends AbstractReporter {
+
+    private static final Layout HEADER = Layout.compile("  %-60s %7s %5s %5s %6s %5s%n");
+
+    private static final Layout HOST = Layout.compile("%s %-60s %6d%% %5d %5d %6d %4d%%%n");
+
+    private static final int LIMIT = 30;
+
+    private static final Layout RUNS = Layout.compile("         Runs: %d%n");
+
+    // tracked hosts first, then the LIMIT hosts appearing most often
+    public static void generate(final ReportWriter writer, final QuerySketch sketch, final Set<String> hosts) {
+        writer.println("History");
+        writer.println("=======");
+        writer.format(RUNS).arg(sketch.getRuns());
+        writer.println();
+        if (sketch.getRuns() == 0) {
+            return;
+        }
+
+        final List<Map.Entry<String, HostSketch>> sorted = new ArrayList<>(sketch.getHosts().entrySet());
+        sorted.sort((a, b) -> {
+            final boolean trackedA = hosts.contains(a.getKey());
+            final boolean trackedB = hosts.contains(b.getKey());
+            if (trackedA != trackedB) {
+                return trackedA ? -1 : 1;
+            }
+            final int appearances = Integer.compare(b.getValue().getAppearances(), a.getValue().getAppearances());
+            return (appearances != 0) ? appearances : a.getKey().compareTo(b.getKey());
+        });
+
+        writer.format(HEADER).arg("Host").arg("appear").arg("p50").arg("p90").arg("urls").arg("ads");
+        int untracked = 0;
+        for (final Map.Entry<String, HostSketch> entry : sorted) {
+            final boolean tracked = hosts.contains(entry.getKey());
+            if (!tracked && (untracked++ >= LIMIT)) {
+                break;
+            }
+
+            final HostSketch host = entry.getValue();
+            final int appearance = (int) ((host.getAppearances() * 100L) / sketch.getRuns());
+            final int advertisements = (host.getResults() == 0) ? 0 : (int) ((host.getAdvertisements() * 100L) / host.getResults());
+            writer.format(HOST).arg(tracked ? "*" : " ").arg(entry.getKey()).arg(appearance);
+            writer.arg(host.getRanks().quantile(0.5)).arg(host.getRanks().quantile(0.9));
+            writer.arg((int) host.getDistinctUrls()).arg(advertisements);
+        }
+        writer.println();
+    }
+
+    private final Path file;
+
+    private final Set<String> hosts;
+
+    private boolean recording;
+
+    private final long run;
+
+    // hosts already seen in the current run, only their best rank counts
+    private final Set<String> seen = new HashSet<>();
+
+    private QuerySketch sketch;
+
+    // run: fetch time of the results, 0 if unknown (shown, but not recorded)
+    public HistoryReporter(final Path file, final long run, final Set<String> hosts) {
+        this.file = file;
+        this.run = run;
+        this.hosts = hosts;
+    }
+
+    @Override
+    public void begin(final Summary summary, final ReportWriter writer) {
+        try {
+            sketch = QuerySketch.read(file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recording = (run > sketch.getLastRun());
+        seen.clear();
+    }
+
+    @Override
+    public void end(final ReportWriter writer) {
+        if (recording) {
+            sketch.addRun(run);
+            try {
+                sketch.write(file);
+            } catch (final IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // nothing recorded so far (and nothing to record): keep the report as it was
+        if (sketch.getRuns() > 0) {
+            writer.println();
+            generate(writer, sketch, hosts);
+        }
+    }
+
+    @Override
+    public void visit(final Result result, final ReportWriter writer) {
+        if (!recording) {
+            return;
+        }
+
+        final String host = result.getUri().getHost();
+        final HostSketch hostSketch = sketch.getHost(host);
+        if (seen.add(host)) {
+            // results arrive in rank order, so the first one is the best one
+            hostSketch.addAppearance(result.getRank());
+        }
+        hostSketch.addResult(result.getUri().toString(), result.isAdvertisement());
+    }
+}
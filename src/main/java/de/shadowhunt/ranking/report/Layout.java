@@ -0,0 +1,138 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+// a printf style line layout that is parsed once and rendered by ReportWriter without
+// any per line parsing, boxing or formatter state
+// supported conversions: %s, %-<width>s, %<width>s, %d, %<width>d, %0<width>d, %n and %%
+public final class Layout {
+
+    static final class Segment {
+
+        final int kind;
+
+        final boolean leftAlign;
+
+        @Nullable
+        final String literal;
+
+        final int width;
+
+        final boolean zeroPad;
+
+        Segment(final int kind, @Nullable final String literal, final int width, final boolean leftAlign, final boolean zeroPad) {
+            this.kind = kind;
+            this.literal = literal;
+            this.width = width;
+            this.leftAlign = leftAlign;
+            this.zeroPad = zeroPad;
+        }
+    }
+
+    static final int INTEGER = 1;
+
+    static final int LITERAL = 0;
+
+    static final int NEWLINE = 3;
+
+    static final int STRING = 2;
+
+    public static Layout compile(final String pattern) {
+        final List<Segment> segments = new ArrayList<>();
+        final StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            final char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+
+            if (i >= pattern.length()) {
+                throw new IllegalArgumentException("incomplete conversion at end of: " + pattern);
+            }
+
+            boolean leftAlign = false;
+            boolean zeroPad = false;
+            if (pattern.charAt(i) == '-') {
+                leftAlign = true;
+                i++;
+            } else if (pattern.charAt(i) == '0') {
+                zeroPad = true;
+                i++;
+            }
+
+            int width = 0;
+            while ((i < pattern.length()) && Character.isDigit(pattern.charAt(i))) {
+                width = (width * 10) + (pattern.charAt(i++) - '0');
+            }
+
+            if (i >= pattern.length()) {
+                throw new IllegalArgumentException("incomplete conversion at end of: " + pattern);
+            }
+            final char conversion = pattern.charAt(i++);
+            switch (conversion) {
+                case '%':
+                    literal.append('%');
+                    break;
+                case 'n':
+                    flush(segments, literal);
+                    segments.add(new Segment(NEWLINE, null, 0, false, false));
+                    break;
+                case 's':
+                    flush(segments, literal);
+                    segments.add(new Segment(STRING, null, width, leftAlign, false));
+                    break;
+                case 'd':
+                    flush(segments, literal);
+                    segments.add(new Segment(INTEGER, null, width, leftAlign, zeroPad));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unsupported conversion %" + conversion + " in: " + pattern);
+            }
+        }
+        flush(segments, literal);
+        return new Layout(pattern, segments);
+    }
+
+    private static void flush(final List<Segment> segments, final StringBuilder literal) {
+        if (literal.length() > 0) {
+            segments.add(new Segment(LITERAL, literal.toString(), 0, false, false));
+            literal.setLength(0);
+        }
+    }
+
+    private final String pattern;
+
+    final Segment[] segments;
+
+    private Layout(final String pattern, final List<Segment> segments) {
+        this.pattern = pattern;
+        this.segments = segments.toArray(new Segment[segments.size()]);
+    }
+
+    @Override
+    public String toString() {
+        return "Layout [pattern=" + pattern + "]";
+    }
+}
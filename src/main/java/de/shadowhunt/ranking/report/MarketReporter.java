@@ -0,0 +1,193 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.data.Result;
+
+public class MarketReporter {
+
+    private static class HostRanking implements Comparable<HostRanking> {
+
+        private final int[] bestRanks;
+
+        private int markets;
+
+        private final String name;
+
+        private final boolean tracked;
+
+        HostRanking(final String name, final boolean tracked, final int size) {
+            this.name = name;
+            this.tracked = tracked;
+            this.bestRanks = new int[size];
+        }
+
+        public void addRank(final int market, final int rank) {
+            if (bestRanks[market] == 0) {
+                bestRanks[market] = rank;
+                markets++;
+            }
+        }
+
+        @Override
+        public int compareTo(final HostRanking o) {
+            if (tracked != o.tracked) {
+                return tracked ? -1 : 1;
+            }
+            if (markets != o.markets) {
+                return o.markets - markets;
+            }
+            return name.compareTo(o.name);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final HostRanking other = (HostRanking) obj;
+            return name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    // best rank per host within the results of one market, collected in the report pass of the market
+    public static final class MarketCollector extends AbstractReporter {
+
+        private final Map<String, Integer> bestRanks = new HashMap<>();
+
+        private int count;
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void visit(final Result result, final ReportWriter writer) {
+            final String host = result.getUri().getHost();
+            // results are visited by rank, so the first hit is the best one
+            bestRanks.putIfAbsent(host, result.getRank());
+            count++;
+        }
+    }
+
+    private static final Layout COLUMN = Layout.compile(" [%02d]");
+
+    private static final Layout HOST = Layout.compile("%s %-60s");
+
+    private static final Layout MARKET = Layout.compile("         [%02d] %s (%d results)%n");
+
+    private static final Layout QUERY = Layout.compile("        Query: %s%n");
+
+    private static final Layout RANK = Layout.compile(" %4d");
+
+    private final List<MarketCollector> collectors = new ArrayList<>();
+
+    private final Set<String> hosts;
+
+    private final List<Market> markets;
+
+    private final String query;
+
+    // every market is collected by its own task into its own collector, so markets must be unique
+    public MarketReporter(final String query, final Set<String> hosts, final List<Market> markets) {
+        if (new HashSet<>(markets).size() != markets.size()) {
+            throw new IllegalArgumentException("duplicate market in " + markets);
+        }
+        this.query = query;
+        this.hosts = hosts;
+        this.markets = Collections.unmodifiableList(new ArrayList<>(markets));
+        for (int i = 0; i < markets.size(); i++) {
+            collectors.add(new MarketCollector());
+        }
+    }
+
+    private SortedSet<HostRanking> calculateRankings() {
+        final Map<String, HostRanking> rankings = new HashMap<>();
+        for (int market = 0; market < collectors.size(); market++) {
+            final MarketCollector collector = collectors.get(market);
+            for (final Map.Entry<String, Integer> entry : collector.bestRanks.entrySet()) {
+                final String host = entry.getKey();
+                HostRanking ranking = rankings.get(host);
+                if (ranking == null) {
+                    ranking = new HostRanking(host, hosts.contains(host), collectors.size());
+                    rankings.put(host, ranking);
+                }
+                ranking.addRank(market, entry.getValue());
+            }
+        }
+        return new TreeSet<>(rankings.values());
+    }
+
+    // collector of the report pass of market: each market once
+    public void collect(final Market market, final MarketCollector collector) {
+        collectors.set(markets.indexOf(market), collector);
+    }
+
+    public void generate(final ReportWriter writer) {
+        writer.println("Markets");
+        writer.println("=======");
+        writer.format(QUERY).arg(query);
+        for (int i = 0; i < markets.size(); i++) {
+            final Market market = markets.get(i);
+            writer.format(MARKET).arg(i + 1).arg(market).arg(collectors.get(i).count);
+        }
+        writer.println();
+
+        writer.format(HOST).arg(" ").arg("Host");
+        for (int i = 0; i < markets.size(); i++) {
+            writer.format(COLUMN).arg(i + 1);
+        }
+        writer.println();
+
+        for (final HostRanking ranking : calculateRankings()) {
+            final String prefix = ranking.tracked ? "*" : " ";
+            writer.format(HOST).arg(prefix).arg(ranking.name);
+            for (final int rank : ranking.bestRanks) {
+                if (rank == 0) {
+                    writer.print("    -");
+                } else {
+                    writer.format(RANK).arg(rank);
+                }
+            }
+            writer.println();
+        }
+        writer.println();
+    }
+}
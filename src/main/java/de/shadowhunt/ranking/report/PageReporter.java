@@ -17,45 +17,38 @@
  */
 package de.shadowhunt.ranking.report;
 
-import java.io.PrintWriter;
 import java.net.URI;
 import java.util.Set;
-import java.util.SortedSet;
 
 import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.Summary;
 
 public class PageReporter extends AbstractReporter {
 
+    private static final Layout ADVERTISEMENT = Layout.compile("%s %03d: ADV %s%n");
+
+    private static final Layout ORGANIC = Layout.compile("%s %03d:     %s%n");
+
+    private static final Layout PAGE = Layout.compile("  =================================== Page %02d ===================================%n");
+
+    private int currentPage;
+
     private final Set<String> hosts;
 
-    public PageReporter(final Set<String> hosts, final SortedSet<Result> data) {
-        super(data);
+    public PageReporter(final Set<String> hosts) {
         this.hosts = hosts;
     }
 
     @Override
-    public void generate(final PrintWriter writer) {
+    public void begin(final Summary summary, final ReportWriter writer) {
         writer.println("Pages");
         writer.println("======");
         writer.println();
+        currentPage = 0;
+    }
 
-        int currentPage = 0;
-        for (final Result result : data) {
-            final int page = result.getPage();
-            if (currentPage != page) {
-                writer.printf("  =================================== Page %02d ===================================%n", page);
-                currentPage = page;
-            }
-
-            final int rank = result.getRank();
-            final URI uri = result.getUri();
-            final String prefix = getPrefix(uri);
-            if (result.isAdvertisement()) {
-                writer.printf("%s %03d: ADV %s%n", prefix, rank, uri);
-            } else {
-                writer.printf("%s %03d:     %s%n", prefix, rank, uri);
-            }
-        }
+    @Override
+    public void end(final ReportWriter writer) {
         // writer.println(" ====================================== ENDE ======================================");
         writer.println();
     }
@@ -67,4 +60,22 @@ public class PageReporter extends AbstractReporter {
         }
         return " ";
     }
+
+    @Override
+    public void visit(final Result result, final ReportWriter writer) {
+        final int page = result.getPage();
+        if (currentPage != page) {
+            writer.format(PAGE).arg(page);
+            currentPage = page;
+        }
+
+        final int rank = result.getRank();
+        final URI uri = result.getUri();
+        final String prefix = getPrefix(uri);
+        if (result.isAdvertisement()) {
+            writer.format(ADVERTISEMENT).arg(prefix).arg(rank).arg(uri);
+        } else {
+            writer.format(ORGANIC).arg(prefix).arg(rank).arg(uri);
+        }
+    }
 }
@@ -0,0 +1,130 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.CheckForNull;
+
+import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.ResultSource;
+import de.shadowhunt.ranking.data.ResultVisitor;
+import de.shadowhunt.ranking.data.Summary;
+import de.shadowhunt.ranking.profiling.ReportEvent;
+import de.shadowhunt.ranking.profiling.ReporterEvent;
+
+public class ReportGenerator {
+
+    // single pass of all reporters, timing each of them while a flight recording is running
+    private static final class Pass implements ResultVisitor {
+
+        @CheckForNull
+        private final long[] passTimes;
+
+        private final List<AbstractReporter> reporters;
+
+        private int results;
+
+        private final ReportWriter writer;
+
+        Pass(final List<AbstractReporter> reporters, final ReportWriter writer, final boolean timed) {
+            this.reporters = reporters;
+            this.writer = writer;
+            this.passTimes = timed ? new long[reporters.size()] : null;
+        }
+
+        @Override
+        public void begin(final Summary summary) {
+            for (int i = 0; i < reporters.size(); i++) {
+                final long start = start();
+                reporters.get(i).begin(summary, writer);
+                stop(i, start);
+            }
+        }
+
+        @Override
+        public void end() {
+            for (int i = 0; i < reporters.size(); i++) {
+                final AbstractReporter reporter = reporters.get(i);
+                final ReporterEvent event = new ReporterEvent();
+                event.begin();
+                reporter.end(writer);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.setPassTime((passTimes == null) ? 0L : passTimes[i]);
+                    event.setReporter(reporter.getClass().getSimpleName());
+                    event.commit();
+                }
+            }
+        }
+
+        private long start() {
+            return (passTimes == null) ? 0L : System.nanoTime();
+        }
+
+        private void stop(final int reporter, final long start) {
+            if (passTimes != null) {
+                passTimes[reporter] += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void visit(final Result result) {
+            results++;
+            for (int i = 0; i < reporters.size(); i++) {
+                final long start = start();
+                reporters.get(i).visit(result, writer);
+                stop(i, start);
+            }
+        }
+    }
+
+    private final List<AbstractReporter> reporters;
+
+    public ReportGenerator(final AbstractReporter... reporters) {
+        this(Arrays.asList(reporters));
+    }
+
+    public ReportGenerator(final List<AbstractReporter> reporters) {
+        this.reporters = Collections.unmodifiableList(new ArrayList<>(reporters));
+    }
+
+    public void generate(final ResultSource source, final ReportWriter writer) throws IOException {
+        final Set<Summary.Value> required = EnumSet.noneOf(Summary.Value.class);
+        for (final AbstractReporter reporter : reporters) {
+            required.addAll(reporter.getRequiredSummary());
+        }
+
+        final ReportEvent event = new ReportEvent();
+        event.begin();
+        final Pass pass = new Pass(reporters, writer, event.isEnabled());
+        source.accept(required, pass);
+        event.end();
+        if (event.shouldCommit()) {
+            event.setReporters(reporters.size());
+            event.setResults(pass.results);
+            event.commit();
+        }
+    }
+}
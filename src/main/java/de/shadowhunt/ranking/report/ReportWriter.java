@@ -0,0 +1,264 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import javax.annotation.Nullable;
+
+// buffered report output: characters are collected in a large char buffer, encoded in bulk
+// and written to the channel in big chunks; lines are rendered from precompiled layouts
+public final class ReportWriter implements Closeable, Flushable {
+
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final int MAX_INT_DIGITS = 11;
+
+    private final ByteBuffer bytes;
+
+    private final WritableByteChannel channel;
+
+    private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+    private final char[] digits = new char[MAX_INT_DIGITS];
+
+    private final CharsetEncoder encoder;
+
+    @Nullable
+    private Layout layout;
+
+    private int position;
+
+    public ReportWriter(final WritableByteChannel channel, final Charset charset) {
+        this.channel = channel;
+        this.encoder = charset.newEncoder() //
+                .onMalformedInput(CodingErrorAction.REPLACE) //
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocateDirect((int) (CHAR_BUFFER_SIZE * encoder.maxBytesPerChar()));
+    }
+
+    // renders the next argument of the current layout
+    public ReportWriter arg(final CharSequence value) {
+        final Layout.Segment segment = nextArgument();
+        final int padding = segment.width - value.length();
+        if (!segment.leftAlign) {
+            pad(' ', padding);
+        }
+        print(value);
+        if (segment.leftAlign) {
+            pad(' ', padding);
+        }
+        return advance();
+    }
+
+    public ReportWriter arg(final int value) {
+        final Layout.Segment segment = nextArgument();
+        if (segment.kind != Layout.INTEGER) {
+            return arg(Integer.toString(value));
+        }
+
+        // render digits backwards into the scratch buffer
+        int start = digits.length;
+        long remaining = Math.abs((long) value);
+        do {
+            digits[--start] = (char) ('0' + (remaining % 10));
+            remaining /= 10;
+        } while (remaining > 0);
+        final boolean negative = value < 0;
+        final int length = (digits.length - start) + (negative ? 1 : 0);
+        final int padding = segment.width - length;
+
+        if (segment.zeroPad) {
+            if (negative) {
+                print('-');
+            }
+            pad('0', padding);
+        } else {
+            if (!segment.leftAlign) {
+                pad(' ', padding);
+            }
+            if (negative) {
+                print('-');
+            }
+        }
+        write(digits, start, digits.length - start);
+        if (segment.leftAlign && !segment.zeroPad) {
+            pad(' ', padding);
+        }
+        return advance();
+    }
+
+    public ReportWriter arg(final Object value) {
+        return arg(String.valueOf(value));
+    }
+
+    private ReportWriter advance() {
+        position++;
+        writeLiterals();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        try {
+            try {
+                flush(true);
+            } finally {
+                // closed even if flushing fails
+                channel.close();
+            }
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            flush(false);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush(final boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            final CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                writeBytes();
+                continue;
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+            break;
+        }
+        chars.compact();
+
+        if (endOfInput) {
+            while (encoder.flush(bytes).isOverflow()) {
+                writeBytes();
+            }
+            encoder.reset();
+        }
+        writeBytes();
+    }
+
+    // starts a new line with the given layout, leading literals are written immediately
+    public ReportWriter format(final Layout next) {
+        this.layout = next;
+        this.position = 0;
+        writeLiterals();
+        return this;
+    }
+
+    private Layout.Segment nextArgument() {
+        if ((layout == null) || (position >= layout.segments.length)) {
+            throw new IllegalStateException("no argument expected by " + layout);
+        }
+        return layout.segments[position];
+    }
+
+    private void pad(final char c, final int count) {
+        for (int i = 0; i < count; i++) {
+            print(c);
+        }
+    }
+
+    public ReportWriter print(final char c) {
+        if (!chars.hasRemaining()) {
+            flush();
+        }
+        chars.put(c);
+        return this;
+    }
+
+    public ReportWriter print(final CharSequence value) {
+        if (value instanceof String) {
+            final String string = (String) value;
+            int offset = 0;
+            while (offset < string.length()) {
+                if (!chars.hasRemaining()) {
+                    flush();
+                }
+                final int length = Math.min(chars.remaining(), string.length() - offset);
+                final int target = chars.arrayOffset() + chars.position();
+                string.getChars(offset, offset + length, chars.array(), target);
+                chars.position(chars.position() + length);
+                offset += length;
+            }
+            return this;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            print(value.charAt(i));
+        }
+        return this;
+    }
+
+    public ReportWriter println() {
+        return print(LINE_SEPARATOR);
+    }
+
+    public ReportWriter println(final CharSequence value) {
+        print(value);
+        return println();
+    }
+
+    private void write(final char[] source, final int offset, final int length) {
+        for (int i = offset; i < (offset + length); i++) {
+            print(source[i]);
+        }
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    private void writeLiterals() {
+        final Layout.Segment[] segments = layout.segments;
+        while (position < segments.length) {
+            final Layout.Segment segment = segments[position];
+            if (segment.kind == Layout.LITERAL) {
+                print(segment.literal);
+            } else if (segment.kind == Layout.NEWLINE) {
+                println();
+            } else {
+                return;
+            }
+            position++;
+        }
+    }
+}
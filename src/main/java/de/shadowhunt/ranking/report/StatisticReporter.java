@@ -17,40 +17,47 @@
  */
 package de.shadowhunt.ranking.report;
 
-import java.io.PrintWriter;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 
 import de.shadowhunt.ranking.data.Result;
+import de.shadowhunt.ranking.data.Summary;
 
 public class StatisticReporter extends AbstractReporter {
 
     private static class ResultCluster implements Comparable<ResultCluster> {
 
+        private int advertisements;
+
+        // results arrive in rank order, so the first one is the best one
+        private final Result best;
+
         private final String name;
 
-        private final SortedSet<Result> results = new TreeSet<>();
+        private int total;
 
-        ResultCluster(final String name) {
+        ResultCluster(final String name, final Result best) {
             this.name = name;
+            this.best = best;
         }
 
         public void addResult(final Result result) {
-            results.add(result);
+            total++;
+            if (result.isAdvertisement()) {
+                advertisements++;
+            }
         }
 
         @Override
         public int compareTo(final ResultCluster o) {
-            final int size = results.size();
-            final int otherSize = o.results.size();
-            if (size == otherSize) {
+            if (total == o.total) {
                 return name.compareTo(o.name);
             }
-            return otherSize - size;
+            return o.total - total;
         }
 
         @Override
@@ -72,14 +79,13 @@ public class StatisticReporter extends AbstractReporter {
             } else if (!name.equals(other.name)) {
                 return false;
             }
-            if (results == null) {
-                if (other.results != null) {
-                    return false;
-                }
-            } else if (!results.equals(other.results)) {
+            if (advertisements != other.advertisements) {
                 return false;
             }
-            return true;
+            if (total != other.total) {
+                return false;
+            }
+            return best.equals(other.best);
         }
 
         @Override
@@ -87,55 +93,48 @@ public class StatisticReporter extends AbstractReporter {
             final int prime = 31;
             int result = 1;
             result = (prime * result) + ((name == null) ? 0 : name.hashCode());
-            result = (prime * result) + ((results == null) ? 0 : results.hashCode());
+            result = (prime * result) + advertisements;
+            result = (prime * result) + total;
+            result = (prime * result) + best.hashCode();
             return result;
         }
     }
 
+    private static final Layout BEST_PAGE = Layout.compile("   - best page: %d%n");
+
+    private static final Layout BEST_RANK = Layout.compile("   - best rank: %d%n");
+
+    private static final Layout HOST = Layout.compile("%s %s%n");
+
+    private static final Layout TOTAL = Layout.compile("   -     total: %d (ADV: %d)%n");
+
+    private final Map<String, ResultCluster> clusters = new HashMap<>();
+
     private final Set<String> hosts;
 
-    public StatisticReporter(final Set<String> hosts, final SortedSet<Result> data) {
-        super(data);
+    public StatisticReporter(final Set<String> hosts) {
         this.hosts = hosts;
     }
 
-    private int countAdvertisements(final SortedSet<Result> results) {
-        int count = 0;
-        for (final Result result : results) {
-            if (result.isAdvertisement()) {
-                count++;
-            }
-        }
-        return count;
+    @Override
+    public void begin(final Summary summary, final ReportWriter writer) {
+        clusters.clear();
     }
 
     @Override
-    public void generate(final PrintWriter writer) {
+    public void end(final ReportWriter writer) {
         writer.println("Statistic");
         writer.println("=========");
         writer.println();
 
-        final Map<String, ResultCluster> clusters = new ConcurrentHashMap<>();
-        for (final Result result : data) {
-            final URI uri = result.getUri();
-            final String host = uri.getHost();
-            ResultCluster cluster = clusters.get(host);
-            if (cluster == null) {
-                cluster = new ResultCluster(host);
-                clusters.put(host, cluster);
-            }
-            cluster.addResult(result);
-        }
-
         final SortedSet<ResultCluster> sortedClusters = new TreeSet<>();
         sortedClusters.addAll(clusters.values());
         for (final ResultCluster cluster : sortedClusters) {
             final String prefix = getPrefix(cluster.name);
-            writer.printf("%s %s%n", prefix, cluster.name);
-            final int advResults = countAdvertisements(cluster.results);
-            writer.printf("   -     total: %d (ADV: %d)%n", cluster.results.size(), advResults);
-            writer.printf("   - best rank: %d%n", cluster.results.first().getRank());
-            writer.printf("   - best page: %d%n", cluster.results.first().getPage());
+            writer.format(HOST).arg(prefix).arg(cluster.name);
+            writer.format(TOTAL).arg(cluster.total).arg(cluster.advertisements);
+            writer.format(BEST_RANK).arg(cluster.best.getRank());
+            writer.format(BEST_PAGE).arg(cluster.best.getPage());
         }
     }
 
@@ -146,4 +145,16 @@ public class StatisticReporter extends AbstractReporter {
         return " ";
     }
 
+    @Override
+    public void visit(final Result result, final ReportWriter writer) {
+        final URI uri = result.getUri();
+        final String host = uri.getHost();
+        ResultCluster cluster = clusters.get(host);
+        if (cluster == null) {
+            cluster = new ResultCluster(host, result);
+            clusters.put(host, cluster);
+        }
+        cluster.addResult(result);
+    }
+
 }
@@ -0,0 +1,328 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.retention;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+// cleans up below one base folder, independent of fetching:
+// .retired/<folder>@<time>-<id> (replaced by Dumper) -> .archive/<folder>/<time>.zip -> deleted by count and age
+// (or deleted right away once older than the retired age, see RetentionPolicy.discard)
+// .staging/<folder>-<uuid> (left behind by killed fetches) -> deleted
+// .versions/<folder>@<time>-<id> (no longer linked from <folder>, lost a concurrent publish) -> .retired
+public class Retention implements Callable<Retention.Result> {
+
+    public static final class Result {
+
+        private long archived;
+
+        private long archivedBytes;
+
+        private long compressedBytes;
+
+        private long deletedFiles;
+
+        private long reclaimedBytes;
+
+        public long getArchived() {
+            return archived;
+        }
+
+        public long getArchivedBytes() {
+            return archivedBytes;
+        }
+
+        public long getCompressedBytes() {
+            return compressedBytes;
+        }
+
+        public long getDeletedFiles() {
+            return deletedFiles;
+        }
+
+        // bytes deleted minus bytes added by archives
+        public long getReclaimedBytes() {
+            return reclaimedBytes - compressedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return "archived " + archived + " versions (" + (archivedBytes >> 10) + " KiB -> " + (compressedBytes >> 10) + " KiB), deleted " + deletedFiles + " files, reclaimed " + (getReclaimedBytes() >> 10) + " KiB";
+        }
+    }
+
+    // spreads the I/O of a pass over time instead of saturating the disk the fetchers write to
+    private static final class Throttle {
+
+        private final long bytesPerSecond;
+
+        private long consumed;
+
+        private final long start = System.nanoTime();
+
+        Throttle(final long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(final long bytes) throws IOException {
+            if (bytesPerSecond <= 0) {
+                return;
+            }
+
+            consumed += bytes;
+            final long due = (consumed * 1000L) / bytesPerSecond;
+            final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (due > elapsed) {
+                try {
+                    Thread.sleep(due - elapsed);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("retention interrupted", e);
+                }
+            }
+        }
+    }
+
+    public static final String ARCHIVE = ".archive";
+
+    // every file costs at least a block worth of I/O, even if it is empty
+    private static final long MIN_FILE_COST = 4096;
+
+    public static final String RETIRED = ".retired";
+
+    public static final String STAGING = ".staging";
+
+    private static final String SUFFIX = ".zip";
+
+    public static final String VERSIONS = ".versions";
+
+    private static boolean isVisible(final Path path) {
+        return !path.getFileName().toString().startsWith(".");
+    }
+
+    private final Path base;
+
+    private final RetentionPolicy policy;
+
+    public Retention(final Path base, final RetentionPolicy policy) {
+        this.base = base;
+        this.policy = policy;
+    }
+
+    private void archive(final Path version, final Throttle throttle, final Result result) throws IOException {
+        final String name = version.getFileName().toString();
+        final String folder = StringUtils.substringBeforeLast(name, "@");
+        final Path target = Files.createDirectories(base.resolve(ARCHIVE).resolve(folder)).resolve(fetched(version) + SUFFIX);
+
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(version)) {
+            for (final Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+
+        final Path temp = target.resolveSibling("." + target.getFileName() + "-" + UUID.randomUUID());
+        try {
+            try (OutputStream stream = Files.newOutputStream(temp); ZipOutputStream zip = new ZipOutputStream(stream)) {
+                zip.setLevel(Deflater.BEST_COMPRESSION);
+                final byte[] buffer = new byte[64 * 1024];
+                for (final Path file : files) {
+                    final long size = Files.size(file);
+                    throttle.acquire(size);
+                    zip.putNextEntry(new ZipEntry(file.getFileName().toString()));
+                    try (InputStream input = Files.newInputStream(file)) {
+                        int read;
+                        while ((read = input.read(buffer)) >= 0) {
+                            zip.write(buffer, 0, read);
+                        }
+                    }
+                    zip.closeEntry();
+                    result.archivedBytes += size;
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        result.archived++;
+        result.compressedBytes += Files.size(target);
+        delete(version, throttle, result);
+    }
+
+    @Override
+    public Result call() throws IOException {
+        final Result result = new Result();
+        final Throttle throttle = new Throttle(policy.getBytesPerSecond());
+        final long now = System.currentTimeMillis();
+
+        // staging folders of fetches that are still running are young
+        for (final Path staging : list(base.resolve(STAGING))) {
+            if ((now - Files.getLastModifiedTime(staging).toMillis()) > policy.getStagingAge()) {
+                delete(staging, throttle, result);
+            }
+        }
+
+        for (final Path version : list(base.resolve(VERSIONS))) {
+            if (!isLinked(version) && ((now - Files.getLastModifiedTime(version).toMillis()) > policy.getStagingAge())) {
+                retire(version);
+            }
+        }
+
+        for (final Path version : list(base.resolve(RETIRED))) {
+            if ((now - fetched(version)) <= policy.getRetiredAge()) {
+                continue;
+            }
+            if (policy.isArchive()) {
+                archive(version, throttle, result);
+            } else {
+                delete(version, throttle, result);
+            }
+        }
+
+        for (final Path folder : list(base.resolve(ARCHIVE))) {
+            prune(folder, now, throttle, result);
+        }
+        return result;
+    }
+
+    private void delete(final Path root, final Throttle throttle, final Result result) throws IOException {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+
+                @Override
+                public FileVisitResult postVisitDirectory(final Path dir, final IOException e) throws IOException {
+                    if (e != null) {
+                        throw e;
+                    }
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) throws IOException {
+                    throttle.acquire(Math.max(MIN_FILE_COST, attributes.size()));
+                    if (Files.deleteIfExists(file)) {
+                        result.deletedFiles++;
+                        result.reclaimedBytes += attributes.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final NoSuchFileException e) {
+            // removed concurrently
+        }
+    }
+
+    // <folder>@<time>-<id>
+    private long fetched(final Path version) {
+        final String name = version.getFileName().toString();
+        return NumberUtils.toLong(StringUtils.substringBefore(StringUtils.substringAfterLast(name, "@"), "-"));
+    }
+
+    private boolean isLinked(final Path version) throws IOException {
+        final Path folder = base.resolve(StringUtils.substringBeforeLast(version.getFileName().toString(), "@"));
+        try {
+            return Files.isSameFile(folder, version);
+        } catch (final NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private List<Path> list(final Path folder) throws IOException {
+        final List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, Retention::isVisible)) {
+            for (final Path path : stream) {
+                if (Files.isDirectory(path)) {
+                    result.add(path);
+                }
+            }
+        } catch (final NoSuchFileException e) {
+            // nothing to do
+        }
+        return result;
+    }
+
+    // keeps the newest archives within count and age
+    private void prune(final Path folder, final long now, final Throttle throttle, final Result result) throws IOException {
+        final List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "[!.]*" + SUFFIX)) {
+            for (final Path archive : stream) {
+                archives.add(archive);
+            }
+        }
+        archives.sort((a, b) -> Long.compare(time(b), time(a)));
+
+        int kept = 0;
+        for (int i = 0; i < archives.size(); i++) {
+            final Path archive = archives.get(i);
+            final boolean expired = (policy.getArchiveAge() > 0) && ((now - time(archive)) > policy.getArchiveAge());
+            if ((i >= policy.getArchives()) || expired) {
+                delete(archive, throttle, result);
+            } else {
+                kept++;
+            }
+        }
+
+        if (kept == 0) {
+            try {
+                Files.deleteIfExists(folder);
+            } catch (final DirectoryNotEmptyException e) {
+                // a concurrent pass is archiving into it
+            }
+        }
+    }
+
+    private void retire(final Path version) throws IOException {
+        final Path target = Files.createDirectories(base.resolve(RETIRED)).resolve(version.getFileName());
+        try {
+            Files.move(version, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final NoSuchFileException e) {
+            // retired concurrently
+        }
+    }
+
+    private long time(final Path archive) {
+        return NumberUtils.toLong(StringUtils.removeEnd(archive.getFileName().toString(), SUFFIX));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.retention;
+
+import java.util.concurrent.TimeUnit;
+
+// what the retention keeps, all durations in milliseconds
+public final class RetentionPolicy {
+
+    // without an explicit retention pass, replaced versions are only kept as long as a report was considered current
+    public static final long RETIRED_AGE = TimeUnit.HOURS.toMillis(12);
+
+    // staging folders of fetches that are still running are younger
+    public static final long STAGING_AGE = TimeUnit.HOURS.toMillis(1);
+
+    // retired versions are deleted (once older than retiredAge) instead of archived, archives are left alone
+    public static RetentionPolicy discard(final long retiredAge, final long stagingAge, final long bytesPerSecond) {
+        return new RetentionPolicy(false, Integer.MAX_VALUE, 0L, retiredAge, stagingAge, bytesPerSecond);
+    }
+
+    private final boolean archive;
+
+    private final long archiveAge;
+
+    private final int archives;
+
+    private final long bytesPerSecond;
+
+    private final long retiredAge;
+
+    private final long stagingAge;
+
+    private RetentionPolicy(final boolean archive, final int archives, final long archiveAge, final long retiredAge, final long stagingAge, final long bytesPerSecond) {
+        this.archive = archive;
+        this.archives = archives;
+        this.archiveAge = archiveAge;
+        this.retiredAge = retiredAge;
+        this.stagingAge = stagingAge;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    public RetentionPolicy(final int archives, final long archiveAge, final long stagingAge, final long bytesPerSecond) {
+        this(true, archives, archiveAge, 0L, stagingAge, bytesPerSecond);
+    }
+
+    // archives older than this are deleted (<= 0: no age limit)
+    public long getArchiveAge() {
+        return archiveAge;
+    }
+
+    // archived versions kept per query (newest first)
+    public int getArchives() {
+        return archives;
+    }
+
+    // I/O bound for reading, writing and deleting (<= 0: unlimited)
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    // retired versions (by the time they were fetched) younger than this are left for a later pass
+    public long getRetiredAge() {
+        return retiredAge;
+    }
+
+    // staging folders of crashed or killed fetches older than this are deleted
+    public long getStagingAge() {
+        return stagingAge;
+    }
+
+    // retired versions are archived (false: deleted)
+    public boolean isArchive() {
+        return archive;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.CheckForNull;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+// rolling flight recording of a run (low overhead "default" settings plus the ranking events),
+// dumped into folder once the run takes longer than the threshold, nothing is kept otherwise
+public final class FlightRecording implements Closeable {
+
+    // the recording keeps only the most recent data (on disk) beyond this size
+    private static final long MAX_SIZE = 256L * 1024L * 1024L;
+
+    // null: flight recorder is not available in this jvm
+    @CheckForNull
+    public static FlightRecording start(final File folder, final long threshold) throws IOException {
+        if (!FlightRecorder.isAvailable()) {
+            return null;
+        }
+
+        final Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration("default");
+        } catch (final ParseException e) {
+            throw new IOException("can not read flight recorder configuration", e);
+        }
+
+        final String name = "flight-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ENGLISH).format(new Date()) + ".jfr";
+        return new FlightRecording(configuration, new File(folder, name).toPath(), threshold);
+    }
+
+    private volatile boolean dumped;
+
+    private final Path file;
+
+    private final Recording recording;
+
+    private final long started = System.nanoTime();
+
+    private final long threshold;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "flight-recording");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FlightRecording(final Configuration configuration, final Path file, final long threshold) {
+        this.file = file;
+        this.threshold = Math.max(0L, threshold);
+        this.recording = new Recording(configuration);
+        recording.setName("google-ranking");
+        recording.setToDisk(true);
+        recording.setMaxSize(MAX_SIZE);
+        recording.start();
+
+        // a run that hangs never reaches close, so the recording is also dumped while it is still running
+        if (this.threshold > 0L) {
+            timer.schedule(this::dumpQuietly, this.threshold, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // dumps the complete recording (again) if the run took longer than the threshold
+    @Override
+    public synchronized void close() throws IOException {
+        timer.shutdownNow();
+        try {
+            if (getElapsed() >= threshold) {
+                dump();
+            }
+        } finally {
+            recording.close();
+        }
+    }
+
+    private synchronized void dump() throws IOException {
+        Files.createDirectories(file.getParent());
+        recording.dump(file);
+        if (!dumped) {
+            System.err.println("run exceeded " + TimeUnit.MILLISECONDS.toSeconds(threshold) + "s, flight recording dumped to " + file);
+            dumped = true;
+        }
+    }
+
+    private void dumpQuietly() {
+        try {
+            dump();
+        } catch (final IOException | RuntimeException e) {
+            System.err.println("can not dump flight recording to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private long getElapsed() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("de.shadowhunt.ranking.Parse")
+@Label("Parse")
+@Category({ "Google Ranking", "Report" })
+@Description("Extracting the results of one page (including reading the file, if not already parsed)")
+@StackTrace(false)
+public final class ParseEvent extends Event {
+
+    @Label("Bytes")
+    @Description("Size of the page file, 0 if the page was already parsed")
+    @DataAmount
+    private long bytes;
+
+    @Label("File")
+    private String file;
+
+    @Label("Page")
+    private int page;
+
+    @Label("Results")
+    private int results;
+
+    public void setBytes(final long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void setFile(final String file) {
+        this.file = file;
+    }
+
+    public void setPage(final int page) {
+        this.page = page;
+    }
+
+    public void setResults(final int results) {
+        this.results = results;
+    }
+}
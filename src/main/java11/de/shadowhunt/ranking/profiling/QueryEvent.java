@@ -0,0 +1,69 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("de.shadowhunt.ranking.Query")
+@Label("Query")
+@Category("Google Ranking")
+@Description("Fetching (if due) and reporting one query in one market")
+@StackTrace(false)
+public final class QueryEvent extends Event {
+
+    @Label("Market")
+    private String market;
+
+    @Label("Pages")
+    private int pages;
+
+    @Label("Query")
+    private String query;
+
+    @Label("Results")
+    private int results;
+
+    @Label("Status")
+    @Description("Result of fetching: complete, incomplete, timed_out or current (not due)")
+    private String status;
+
+    public void setMarket(final String market) {
+        this.market = market;
+    }
+
+    public void setPages(final int pages) {
+        this.pages = pages;
+    }
+
+    public void setQuery(final String query) {
+        this.query = query;
+    }
+
+    public void setResults(final int results) {
+        this.results = results;
+    }
+
+    public void setStatus(final String status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("de.shadowhunt.ranking.Report")
+@Label("Report")
+@Category({ "Google Ranking", "Report" })
+@Description("Single pass of all reporters over the results of a query")
+@StackTrace(false)
+public final class ReportEvent extends Event {
+
+    @Label("Reporters")
+    private int reporters;
+
+    @Label("Results")
+    private int results;
+
+    public void setReporters(final int reporters) {
+        this.reporters = reporters;
+    }
+
+    public void setResults(final int results) {
+        this.results = results;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// the pass interleaves all reporters, so only their final phase is the duration of the event
+@Name("de.shadowhunt.ranking.Reporter")
+@Label("Reporter")
+@Category({ "Google Ranking", "Report" })
+@Description("Final phase of one reporter, with the time it spent during the shared pass")
+@StackTrace(false)
+public final class ReporterEvent extends Event {
+
+    @Label("Pass Time")
+    @Description("Time spent in begin and visit")
+    @Timespan(Timespan.NANOSECONDS)
+    private long passTime;
+
+    @Label("Reporter")
+    private String reporter;
+
+    public void setPassTime(final long passTime) {
+        this.passTime = passTime;
+    }
+
+    public void setReporter(final String reporter) {
+        this.reporter = reporter;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("de.shadowhunt.ranking.Request")
+@Label("Request")
+@Category({ "Google Ranking", "Fetch" })
+@Description("Requesting and parsing one result page")
+@StackTrace(false)
+public final class RequestEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    private long bytes;
+
+    @Label("Market")
+    private String market;
+
+    @Label("Page")
+    private int page;
+
+    @Label("Query")
+    private String query;
+
+    @Label("HTTP Status")
+    private int status;
+
+    @Label("URI")
+    private String uri;
+
+    public void setBytes(final long bytes) {
+        this.bytes = bytes;
+    }
+
+    public void setMarket(final String market) {
+        this.market = market;
+    }
+
+    public void setPage(final int page) {
+        this.page = page;
+    }
+
+    public void setQuery(final String query) {
+        this.query = query;
+    }
+
+    public void setStatus(final int status) {
+        this.status = status;
+    }
+
+    public void setUri(final String uri) {
+        this.uri = uri;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.shadowhunt.ranking.catalog.RefreshPlanner;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.loadtest.SerpGenerator;
+import de.shadowhunt.ranking.loadtest.SerpServer;
+import de.shadowhunt.ranking.retention.Retention;
+import de.shadowhunt.ranking.retention.RetentionPolicy;
+
+public class RankingEngineTest {
+
+    private static final int PAGES = 2;
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private File base;
+
+    private RankingEngine engine;
+
+    private List<Market> markets;
+
+    private SerpServer server;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void discard() throws Exception {
+        final long now = System.currentTimeMillis();
+        final File outdated = new File(base, Retention.RETIRED + "/bar@" + (now - RetentionPolicy.RETIRED_AGE - 1000L) + "-a");
+        final File recent = new File(base, Retention.RETIRED + "/bar@" + now + "-b");
+        for (final File version : Arrays.asList(outdated, recent)) {
+            Assert.assertTrue(version.mkdirs());
+            Files.write(new File(version, "page-001.html").toPath(), "<html/>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        // the publish of foo triggers the pass over the base, close() waits for it
+        Assert.assertEquals(Dumper.Status.COMPLETE, engine.rank("foo").get().getResults().get(0).getStatus());
+        engine.close();
+        Assert.assertFalse(outdated.exists());
+        Assert.assertTrue(recent.isDirectory());
+    }
+
+    @Test
+    public void markets() throws Exception {
+        final RankingResponse response = engine.rank(new RankingRequest("foo", markets, Collections.singleton("www.host-00001.example"))).get();
+        Assert.assertEquals(2, response.getResults().size());
+        final File report = response.getMarketReport();
+        Assert.assertNotNull(report);
+
+        // the comparison is collected from the report passes of the markets, no results are held
+        final String content = read(report);
+        for (final RankingResult result : response.getResults()) {
+            Assert.assertTrue(result.getResults().isEmpty());
+            final int count = new Collector(result.getFolder()).parseData().size();
+            Assert.assertTrue(content, content.contains(result.getMarket() + " (" + count + " results)"));
+        }
+    }
+
+    @Test
+    public void stream() throws Exception {
+        final RankingResult result = engine.rank("foo").get().getResults().get(0);
+        Assert.assertEquals(Dumper.Status.COMPLETE, result.getStatus());
+        Assert.assertTrue(result.getResults().isEmpty());
+        Assert.assertNotNull(result.getReport());
+        Assert.assertTrue(read(result.getReport()).contains("foo"));
+
+        // the dump is current: reported again without fetching
+        final RankingResult current = engine.rank("foo").get().getResults().get(0);
+        Assert.assertNull(current.getStatus());
+        Assert.assertEquals(result.getFetched(), current.getFetched());
+    }
+
+    @Test
+    public void withResults() throws Exception {
+        final RankingRequest request = new RankingRequest("foo", markets.subList(0, 1), Collections.emptySet()).withResults();
+        final RankingResult result = engine.rank(request).get().getResults().get(0);
+        final Collector collector = new Collector(result.getFolder());
+        Assert.assertEquals(new ArrayList<>(collector.parseData()), new ArrayList<>(result.getResults()));
+        final String report = read(result.getReport());
+
+        // unchanged dump: the results come from the cache (the pages are not read again) and give the same report
+        Files.delete(new File(result.getFolder(), "page-001.html").toPath());
+        final RankingResult cached = engine.rank(request).get().getResults().get(0);
+        Assert.assertEquals(new ArrayList<>(result.getResults()), new ArrayList<>(cached.getResults()));
+        Assert.assertEquals(report, read(cached.getReport()));
+    }
+
+    @Before
+    public void start() throws IOException {
+        base = temp.newFolder("base");
+        server = new SerpServer(0, new SerpGenerator(PAGES, 0.3, 50), 0.0, 0.0, 0.0, 0);
+        markets = Arrays.asList(new Market(server.getUri(), "de", null), new Market(server.getUri(), "en", "us"));
+        final RefreshPlanner planner = new RefreshPlanner(TimeUnit.HOURS.toMillis(1), TimeUnit.DAYS.toMillis(1));
+        engine = new RankingEngine(markets.subList(0, 1), base, Collections.emptySet(), 2, new FetchSettings(PAGES), planner);
+    }
+
+    @After
+    public void stop() throws IOException {
+        engine.close();
+        server.close();
+    }
+}
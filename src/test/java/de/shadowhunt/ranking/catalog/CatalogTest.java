@@ -0,0 +1,86 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CatalogTest {
+
+    private static Entry entry(final String folder, final long fetched) {
+        final List<PageRecord> pages = Arrays.asList(new PageRecord(fetched, 10, "a"), new PageRecord(fetched, 3, "b"));
+        return new Entry(folder, folder.replace('_', ' '), fetched, pages);
+    }
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void format() {
+        final Entry entry = entry("foo_bar", 1000L);
+        final Entry parsed = Catalog.parse(Catalog.format(entry).trim());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals("foo_bar", parsed.getFolder());
+        Assert.assertEquals("foo bar", parsed.getQuery());
+        Assert.assertEquals(1000L, parsed.getFetched());
+        Assert.assertEquals(13, parsed.getResultCount());
+        Assert.assertEquals(2, parsed.getSummary().getLastPage());
+    }
+
+    @Test
+    public void partialLine() throws IOException {
+        final Catalog catalog = new Catalog(temp.getRoot());
+        catalog.record(entry("foo", 1000L));
+
+        // a writer died in the middle of its line
+        final Path file = temp.getRoot().toPath().resolve(Catalog.FILE_NAME);
+        Files.write(file, "bar\t2000\tba".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        catalog.record(entry("baz", 3000L));
+        final Catalog reader = new Catalog(temp.getRoot());
+        Assert.assertNull(reader.get("bar"));
+        Assert.assertEquals(1000L, reader.get("foo").getFetched());
+        Assert.assertEquals(3000L, reader.get("baz").getFetched());
+    }
+
+    @Test
+    public void record() throws IOException {
+        final Catalog catalog = new Catalog(temp.getRoot());
+        Assert.assertNull(catalog.get("foo"));
+
+        catalog.record(entry("foo", 1000L));
+        catalog.record(entry("bar", 1500L));
+        catalog.record(entry("foo", 2000L));
+        Assert.assertEquals(2000L, catalog.get("foo").getFetched());
+
+        // another process (or instance) reads the same file
+        final Catalog reader = new Catalog(temp.getRoot());
+        Assert.assertEquals(2, reader.list().size());
+        Assert.assertEquals(2000L, reader.get("foo").getFetched());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RefreshPlannerTest {
+
+    private static final long NOW = 1_000_000L;
+
+    // without learned volatility every entry is due after the minimum interval (1000)
+    private static final RefreshPlanner PLANNER = new RefreshPlanner(1_000L, 10_000L);
+
+    private static Entry entry(final String query, final double priority, final int pages) {
+        final List<PageRecord> records = new ArrayList<>();
+        final long fetched = NOW - (long) (priority * 1_000L);
+        for (int i = 0; i < pages; i++) {
+            records.add(new PageRecord(fetched, 10, "hash"));
+        }
+        return new Entry(query, query, fetched, records);
+    }
+
+    @Test
+    public void budget() {
+        final List<Entry> entries = Arrays.asList(entry("a", 3.0, 1), entry("b", 2.0, 1), entry("c", 1.5, 1));
+        Assert.assertEquals(Arrays.asList("a", "b"), PLANNER.plan(entries, NOW, 2, 1));
+        Assert.assertEquals(Arrays.asList("a"), PLANNER.plan(entries, NOW, 3, 2));
+        Assert.assertEquals(Collections.emptyList(), PLANNER.plan(entries, NOW, 1, 2));
+        Assert.assertEquals(Collections.emptyList(), PLANNER.plan(entries, NOW, 0, 1));
+    }
+
+    @Test
+    public void displacement() {
+        final List<String> ranking = Arrays.asList("a", "b", "c");
+        Assert.assertEquals(0.0, RefreshPlanner.displacement(ranking, ranking), 0.0);
+        // new hosts count as moved in from the end of the window
+        Assert.assertEquals(0.95, RefreshPlanner.displacement(Collections.emptyList(), ranking), 1e-9);
+        Assert.assertTrue(RefreshPlanner.displacement(ranking, Arrays.asList("b", "a", "c")) < 0.1);
+    }
+
+    @Test
+    public void due() {
+        final List<Entry> entries = Arrays.asList(entry("current", 0.5, 1), entry("due", 1.0, 1));
+        Assert.assertEquals(Arrays.asList("due"), PLANNER.plan(entries, NOW, 10, 1));
+    }
+
+    @Test
+    public void largeCatalog() {
+        final List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            entries.add(entry("q" + i, 1.0 + (i % 100), 1 + (i % 5)));
+        }
+
+        final List<String> plan = PLANNER.plan(entries, NOW, 100, 2);
+        // only single page queries with the highest priority (96) fit
+        Assert.assertEquals(50, plan.size());
+        for (final String query : plan) {
+            final int i = Integer.parseInt(query.substring(1));
+            Assert.assertEquals(95, i % 100);
+        }
+    }
+
+    @Test
+    public void mergeMarkets() {
+        // the same query in two markets is planned once, charged for the larger page count in both
+        final List<Entry> entries = Arrays.asList(entry("a", 2.0, 2), entry("a", 4.0, 1), entry("b", 1.5, 1));
+        Assert.assertEquals(Arrays.asList("a", "b"), PLANNER.plan(entries, NOW, 6, 2));
+        Assert.assertEquals(Arrays.asList("a"), PLANNER.plan(entries, NOW, 5, 2));
+    }
+
+    @Test
+    public void perPageRequest() {
+        // b is less overdue, but a costs four times as much
+        final List<Entry> entries = Arrays.asList(entry("a", 4.0, 4), entry("b", 2.0, 1));
+        Assert.assertEquals(Arrays.asList("b", "a"), PLANNER.plan(entries, NOW, 5, 1));
+        Assert.assertEquals(Arrays.asList("b"), PLANNER.plan(entries, NOW, 4, 1));
+    }
+
+    @Test
+    public void skipOvershoot() {
+        // a does not fit into the remaining budget, the smaller c still does
+        final List<Entry> entries = Arrays.asList(entry("a", 9.0, 3), entry("b", 4.0, 1), entry("c", 1.0, 1));
+        Assert.assertEquals(Arrays.asList("b", "a"), PLANNER.plan(entries, NOW, 4, 1));
+        Assert.assertEquals(Arrays.asList("b", "c"), PLANNER.plan(entries, NOW, 3, 1));
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PageTest {
+
+    private static final int PAGE_ID = 3;
+
+    private static final int RANK = 20;
+
+    private static final File TRAINING = new File("assets/training/training/page-001.html");
+
+    // the extraction of the complete dom the scanner replaced
+    private static List<Result> extract(final byte[] content) {
+        final Document document = Jsoup.parse(new String(content, StandardCharsets.UTF_8));
+        final SortedSet<Result> results = new TreeSet<>();
+        final Elements links = document.getElementsByTag("cite");
+        for (int i = 0; i < links.size(); i++) {
+            final Element link = links.get(i);
+            final boolean advertisement = isAdvertisement(link);
+            final Element greatParent = link.parent().parent();
+            final String url;
+            if (advertisement) {
+                url = StringUtils.split(greatParent.attr("data-preconnect-urls"), ",")[0];
+            } else {
+                url = greatParent.attr("href");
+            }
+            results.add(new Result(PAGE_ID, RANK + i, URI.create(url), advertisement));
+        }
+        return new ArrayList<>(results);
+    }
+
+    private static String fixture() {
+        final StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html>\n<html lang=\"de\">\n<head>\n<meta charset=\"UTF-8\">\n<title>fixture <cite>title</cite></title>\n");
+        html.append("<script>var s = '<div><a href=\"https://script.example.org/\"><div><cite>script</cite></div></a></div>';</script>\n");
+        html.append("<style>cite { color: green; }</style>\n</head>\n<body>\n<!-- <a href=\"https://comment.example.org/\"><div><cite>comment</cite></div></a> -->\n");
+        html.append("<div id=\"search\">\n");
+        // advertisements: both markers, whitespace and a nested marker
+        html.append("<div class=\"ads-ad\"><a data-preconnect-urls=\"https://ad1.example.com/a,https://www.googleadservices.com/\" href=\"/aclk?sa=l&amp;ai=1\">");
+        html.append("<h3>Ad 1</h3><div><span>Anzeige</span><cite>ad1.example.com/a</cite></div></a></div>\n");
+        html.append("<div class=\"ads-ad\"><a href='/aclk?sa=l&amp;ai=2' data-preconnect-urls='https://ad2.example.com/b'>");
+        html.append("<h3>Ad 2</h3><div><span> Ad\n</span><cite>ad2.example.com/b</cite></div></a></div>\n");
+        html.append("<div class=\"ads-ad\"><a data-preconnect-urls=\"https://ad3.example.com/c?x=1&amp;y=2\" href=\"/aclk?sa=l&amp;ai=3\">");
+        html.append("<h3>Ad 3</h3><div><span><b>Anzeige</b></span><cite>ad3.example.com/c</cite></div></a></div>\n");
+        // organic results: entities, unquoted attributes, upper case tags and multi byte characters
+        for (int i = 1; i <= 10; i++) {
+            html.append("<div class=\"g\"><div class=\"r\"><a href=\"https://www.example.org/result/").append(i).append("?a=1&amp;b=").append(i).append("\">");
+            html.append("<h3>Ergebnis ").append(i).append(" über Äpfel</h3><br><div><cite>www.example.org/result/").append(i).append("</cite></div></a></div></div>\n");
+        }
+        html.append("<div class=g><div class=r><A HREF=https://www.müller.example/straße><h3>Müller</h3><DIV><CITE>www.müller.example</CITE></DIV></A></div></div>\n");
+        html.append("<div class=\"g\"><div class=\"r\"><a href=\"https://www.example.net/ad\"><h3>Ad</h3><div><cite>Ad</cite><span>not a marker: Anzeige</span></div></a></div></div>\n");
+        html.append("<div class=\"g\"><div class=\"r\"><a href=\"https://www.example.net/emoji\"><h3>😀</h3><div><cite>www.example.net › 😀</cite></div></a></div></div>\n");
+        html.append("</div>\n");
+        // pagination: next page links and the numbered pages
+        html.append("<div id=\"foot\">\n<table id=\"nav\"><tr>");
+        for (int i = 1; i <= 10; i++) {
+            html.append("<td><a class=\"fl\" href=\"/search?q=fixture&amp;start=").append(i * 10).append("\">").append(i + 1).append("</a></td>");
+        }
+        html.append("</tr></table>\n<a class=\"pn\" id=\"pnnext\" href=\"/search?q=fixture&amp;start=10\"><span>Weiter</span></a>\n</div>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    private static boolean isAdvertisement(final Element element) {
+        for (final Element sibling : element.siblingElements()) {
+            final String text = sibling.text();
+            if ("Ad".equals(text) || "Anzeige".equals(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private void assertCut(final byte[] content, final int size) throws IOException {
+        final byte[] prefix = new byte[size];
+        System.arraycopy(content, 0, prefix, 0, size);
+        final File file = write(content);
+        final Page page = new Page(file, PAGE_ID, RANK, size);
+        Assert.assertEquals("cut at " + size, extract(prefix), new ArrayList<>(page.parse()));
+        Assert.assertTrue("cut at " + size, page.isTruncated());
+    }
+
+    private List<Result> parse(final byte[] content) throws IOException {
+        final Page page = new Page(write(content), PAGE_ID, RANK);
+        final List<Result> results = new ArrayList<>(page.parse());
+        Assert.assertFalse(page.isTruncated());
+        return results;
+    }
+
+    @Test
+    public void scanFixture() throws IOException {
+        final byte[] content = fixture().getBytes(StandardCharsets.UTF_8);
+        final List<Result> results = parse(content);
+        Assert.assertEquals(extract(content), results);
+
+        Assert.assertEquals(16, results.size());
+        Assert.assertEquals(new Result(PAGE_ID, RANK, URI.create("https://ad1.example.com/a"), true), results.get(0));
+        Assert.assertEquals(new Result(PAGE_ID, RANK + 2, URI.create("https://ad3.example.com/c?x=1&y=2"), true), results.get(2));
+        Assert.assertEquals(new Result(PAGE_ID, RANK + 3, URI.create("https://www.example.org/result/1?a=1&b=1"), false), results.get(3));
+        Assert.assertFalse(results.get(14).isAdvertisement());
+    }
+
+    @Test
+    public void scanTraining() throws IOException {
+        final byte[] content = Files.readAllBytes(TRAINING.toPath());
+        final List<Result> results = parse(content);
+        Assert.assertEquals(extract(content), results);
+
+        Assert.assertEquals(11, results.size());
+        Assert.assertTrue(results.get(0).isAdvertisement());
+        Assert.assertEquals(URI.create("https://shop.example.com/angebot"), results.get(0).getUri());
+        Assert.assertEquals(URI.create("https://www.tagesschau.de/training/10"), results.get(10).getUri());
+    }
+
+    @Test
+    public void sizeCap() throws IOException {
+        final String fixture = fixture();
+        final byte[] content = fixture.getBytes(StandardCharsets.UTF_8);
+        // within the tags, the text and the multi byte characters of the results
+        for (int size = fixture.indexOf("<div id=\"search\">"); size < content.length; size++) {
+            assertCut(content, size);
+        }
+    }
+
+    @Test
+    public void sizeCapTraining() throws IOException {
+        final byte[] content = Files.readAllBytes(TRAINING.toPath());
+        for (int size = 0; size < content.length; size++) {
+            assertCut(content, size);
+        }
+    }
+
+    private File write(final byte[] content) throws IOException {
+        final File file = temp.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+}
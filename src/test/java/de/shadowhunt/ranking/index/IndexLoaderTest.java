@@ -0,0 +1,157 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.shadowhunt.ranking.Collector;
+import de.shadowhunt.ranking.Dumper;
+import de.shadowhunt.ranking.catalog.Catalog;
+import de.shadowhunt.ranking.data.Market;
+import de.shadowhunt.ranking.loadtest.SerpGenerator;
+import de.shadowhunt.ranking.loadtest.SerpServer;
+
+public class IndexLoaderTest {
+
+    private static final int PAGES = 2;
+
+    private File base;
+
+    private IndexLoader loader;
+
+    private Market market;
+
+    private SerpServer server;
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    private void dump(final String query) throws Exception {
+        Assert.assertEquals(Dumper.Status.COMPLETE, new Dumper(market, query, PAGES, base).collectData());
+    }
+
+    private IndexedQuery find(final String query) {
+        final List<IndexedQuery> found = loader.getIndex().findQuery(query, null);
+        Assert.assertEquals(1, found.size());
+        return found.get(0);
+    }
+
+    @Test
+    public void failedCatalog() throws Exception {
+        dump("foo");
+        Assert.assertEquals(1, loader.refresh().getChanged());
+
+        // the share of the market is gone for a moment
+        final Path catalog = base.toPath().resolve(Catalog.FILE_NAME);
+        Files.delete(catalog);
+        Files.createDirectory(catalog);
+        final IndexLoader.Refresh refresh = loader.refresh();
+        Assert.assertEquals(0, refresh.getChanged());
+        Assert.assertEquals(Collections.singleton(base), refresh.getFailures().keySet());
+        Assert.assertEquals(1, loader.getIndex().getQueries());
+    }
+
+    @Test
+    public void failedFolder() throws Exception {
+        dump("foo");
+        dump("bar");
+        Assert.assertEquals(2, loader.refresh().getChanged());
+        final IndexedQuery loaded = find("foo");
+
+        // a newer dump that can not be read keeps the previous results
+        dump("foo");
+        final Path page = base.toPath().resolve(Collector.calculateDatabaseName("foo")).resolve("page-001.html");
+        Files.delete(page);
+        Files.createDirectory(page);
+        IndexLoader.Refresh refresh = loader.refresh();
+        Assert.assertEquals(0, refresh.getChanged());
+        Assert.assertEquals(1, refresh.getFailures().size());
+        Assert.assertTrue(refresh.getFailures().get(base.toPath().resolve("foo").toFile()) instanceof IOException);
+        Assert.assertSame(loaded, find("foo"));
+        Assert.assertEquals(2, loader.getIndex().getQueries());
+
+        // and is retried next time
+        dump("foo");
+        refresh = loader.refresh();
+        Assert.assertEquals(1, refresh.getChanged());
+        Assert.assertTrue(refresh.getFailures().isEmpty());
+        Assert.assertTrue(find("foo").getFetched() > loaded.getFetched());
+    }
+
+    @Test
+    public void hotReload() throws Exception {
+        Assert.assertEquals(0, loader.refresh().getChanged());
+        Assert.assertEquals(0, loader.getIndex().getQueries());
+
+        dump("foo");
+        dump("bar");
+        IndexLoader.Refresh refresh = loader.refresh();
+        Assert.assertEquals(2, refresh.getChanged());
+        Assert.assertTrue(refresh.getFailures().isEmpty());
+        final RankingIndex first = loader.getIndex();
+        Assert.assertEquals(2, first.getQueries());
+        final IndexedQuery foo = find("foo");
+        final IndexedQuery bar = find("bar");
+        Assert.assertEquals(market.toString(), foo.getMarket());
+        Assert.assertEquals(new ArrayList<>(new Collector(base, "foo").parseData()), foo.getResults());
+        Assert.assertEquals(foo.getResults().size() + bar.getResults().size(), first.getResults());
+
+        // nothing changed: the snapshot is kept
+        Assert.assertEquals(0, loader.refresh().getChanged());
+        Assert.assertSame(first, loader.getIndex());
+
+        // only the folder with a newer dump is parsed again
+        dump("foo");
+        dump("baz");
+        refresh = loader.refresh();
+        Assert.assertEquals(2, refresh.getChanged());
+        Assert.assertNotSame(first, loader.getIndex());
+        Assert.assertEquals(3, loader.getIndex().getQueries());
+        Assert.assertTrue(find("foo").getFetched() > foo.getFetched());
+        Assert.assertEquals(foo.getResults(), find("foo").getResults());
+        Assert.assertSame(bar, find("bar"));
+        // the snapshot of a reader is not affected by the reload
+        Assert.assertSame(foo, first.findQuery("foo", null).get(0));
+    }
+
+    @Before
+    public void start() throws IOException {
+        base = temp.newFolder("base");
+        server = new SerpServer(0, new SerpGenerator(PAGES, 0.3, 50), 0.0, 0.0, 0.0, 0);
+        market = new Market(server.getUri(), Market.DEFAULT_LANGUAGE, null);
+        loader = new IndexLoader(Collections.singletonMap(market, base));
+    }
+
+    @After
+    public void stop() {
+        server.close();
+    }
+}
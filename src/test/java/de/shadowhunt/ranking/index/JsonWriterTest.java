@@ -0,0 +1,73 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonWriterTest {
+
+    private static String value(final String value) {
+        return new JsonWriter().value(value).toString();
+    }
+
+    @Test
+    public void controlCharacters() {
+        Assert.assertEquals("\"\\n\\r\\t\"", value("\n\r\t"));
+        for (char c = 0; c < 0x20; c++) {
+            if ((c != '\n') && (c != '\r') && (c != '\t')) {
+                Assert.assertEquals("\"\\u00" + Integer.toHexString(0x100 | c).substring(1) + "\"", value(String.valueOf(c)));
+            }
+        }
+        // delete and the line separators are valid json strings
+        final String separators = new String(new char[] { 0x7f, 0x2028, 0x2029 });
+        Assert.assertEquals("\"" + separators + "\"", value(separators));
+    }
+
+    @Test
+    public void names() {
+        final String json = new JsonWriter().beginObject().name("a\"b").value(1L).name("c\\d").value(true).endObject().toString();
+        Assert.assertEquals("{\"a\\\"b\":1,\"c\\\\d\":true}", json);
+    }
+
+    @Test
+    public void quotesAndBackslashes() {
+        Assert.assertEquals("\"\"", value(""));
+        Assert.assertEquals("\"say \\\"hi\\\"\"", value("say \"hi\""));
+        Assert.assertEquals("\"c:\\\\temp\\\\\"", value("c:\\temp\\"));
+        // solidus does not need escaping, e.g. in urls
+        Assert.assertEquals("\"https://www.example.org/?q=a&b=<c>\"", value("https://www.example.org/?q=a&b=<c>"));
+    }
+
+    @Test
+    public void separators() {
+        final JsonWriter json = new JsonWriter();
+        json.beginObject().name("hosts").beginArray();
+        json.beginObject().name("host").value("a").name("queries").value(2L).endObject();
+        json.beginObject().name("host").value("b").name("queries").value(-1L).endObject();
+        json.endArray().name("empty").beginArray().endArray().name("nested").beginObject().name("ok").value(false).endObject();
+        json.endObject();
+        Assert.assertEquals("{\"hosts\":[{\"host\":\"a\",\"queries\":2},{\"host\":\"b\",\"queries\":-1}],\"empty\":[],\"nested\":{\"ok\":false}}", json.toString());
+    }
+
+    @Test
+    public void unicode() {
+        // written as is, the response is encoded as utf-8
+        Assert.assertEquals("\"müller.example 😀\"", value("müller.example 😀"));
+    }
+}
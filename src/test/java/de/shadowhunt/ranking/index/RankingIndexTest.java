@@ -0,0 +1,170 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.index;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.shadowhunt.ranking.data.Result;
+
+public class RankingIndexTest {
+
+    private static IndexedQuery query(final String market, final String query, final String... uris) {
+        final List<Result> results = new ArrayList<>();
+        for (int i = 0; i < uris.length; i++) {
+            // a leading '$' marks an advertisement
+            final boolean advertisement = uris[i].startsWith("$");
+            results.add(new Result(1, i + 1, URI.create(advertisement ? uris[i].substring(1) : uris[i]), advertisement));
+        }
+        return new IndexedQuery(market, query.replace(' ', '_'), query, 1000L, results);
+    }
+
+    private static List<String> hosts(final List<RankingIndex.HostCount> counts) {
+        final List<String> hosts = new ArrayList<>();
+        for (final RankingIndex.HostCount count : counts) {
+            hosts.add(count.getHost() + "=" + count.getCount());
+        }
+        return hosts;
+    }
+
+    private static List<String> queries(final List<Posting> postings) {
+        final List<String> queries = new ArrayList<>();
+        for (final Posting posting : postings) {
+            queries.add(posting.getQuery().getMarket() + ":" + posting.getQuery().getQuery() + "@" + posting.getRank());
+        }
+        return queries;
+    }
+
+    private final RankingIndex index = RankingIndex.build(Arrays.asList( //
+            query("de", "foo", "$https://ad.example/", "https://a.example/1", "https://B.example/", "https://a.example/2"), //
+            query("de", "bar", "https://b.example/", "https://c.example/", "$https://a.example/"), //
+            query("en", "foo", "https://c.example/", "https://a.example/", "https://b.example/"), //
+            query("en", "baz", "urn:no-host", "https://c.example/x", "https://c.example/y")), 42L);
+
+    @Test
+    public void empty() {
+        Assert.assertEquals(0, RankingIndex.EMPTY.getQueries());
+        Assert.assertTrue(RankingIndex.EMPTY.findHost("a.example", 10, RankingIndex.Advertisements.INCLUDE, null, 10).isEmpty());
+        Assert.assertTrue(RankingIndex.EMPTY.findQuery("foo", null).isEmpty());
+        Assert.assertTrue(RankingIndex.EMPTY.top(10, RankingIndex.Advertisements.INCLUDE, null, 10).isEmpty());
+    }
+
+    @Test
+    public void findHost() {
+        // best rank of the host per query, best first
+        Assert.assertEquals(Arrays.asList("de:foo@2", "en:foo@2"), queries(index.findHost("a.example", 10, RankingIndex.Advertisements.EXCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("de:foo@2", "en:foo@2", "de:bar@3"), queries(index.findHost("A.Example", 10, RankingIndex.Advertisements.INCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("de:bar@3"), queries(index.findHost("a.example", 10, RankingIndex.Advertisements.ONLY, null, 10)));
+
+        // sub pages of a host are counted in the posting of the best one
+        final Posting posting = index.findHost("a.example", 10, RankingIndex.Advertisements.EXCLUDE, "de", 10).get(0);
+        Assert.assertEquals(2, posting.getCount());
+        Assert.assertEquals(URI.create("https://a.example/1"), posting.getResult().getUri());
+
+        Assert.assertEquals(Arrays.asList("de:bar@1", "de:foo@3"), queries(index.findHost("b.example", 10, RankingIndex.Advertisements.INCLUDE, "de", 10)));
+        Assert.assertEquals(Arrays.asList("de:bar@1"), queries(index.findHost("b.example", 2, RankingIndex.Advertisements.INCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("en:foo@1", "de:bar@2"), queries(index.findHost("c.example", 10, RankingIndex.Advertisements.INCLUDE, null, 2)));
+        Assert.assertTrue(index.findHost("d.example", 10, RankingIndex.Advertisements.INCLUDE, null, 10).isEmpty());
+        Assert.assertTrue(index.findHost("ad.example", 10, RankingIndex.Advertisements.EXCLUDE, null, 10).isEmpty());
+    }
+
+    @Test
+    public void findQuery() {
+        Assert.assertEquals(2, index.findQuery("foo", null).size());
+        // normalized like the folder name
+        final List<IndexedQuery> found = index.findQuery("  FOO ", "en");
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("en", found.get(0).getMarket());
+        Assert.assertEquals(URI.create("https://c.example/"), found.get(0).getResults().get(0).getUri());
+        Assert.assertTrue(index.findQuery("bar", "en").isEmpty());
+        Assert.assertTrue(index.findQuery("qux", null).isEmpty());
+    }
+
+    @Test
+    public void statistics() {
+        Assert.assertEquals(42L, index.getLoaded());
+        Assert.assertEquals(4, index.getQueries());
+        Assert.assertEquals(13, index.getResults());
+        Assert.assertEquals(4, index.getHosts());
+        // best result per host and query: foo(de) 3, bar 3, foo(en) 3, baz 1
+        Assert.assertEquals(10, index.getPostings());
+    }
+
+    @Test
+    public void top() {
+        Assert.assertEquals(Arrays.asList("b.example=3", "c.example=3", "a.example=2"), hosts(index.top(10, RankingIndex.Advertisements.EXCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("a.example=3", "b.example=3", "c.example=3", "ad.example=1"), hosts(index.top(10, RankingIndex.Advertisements.INCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("a.example=1", "ad.example=1"), hosts(index.top(10, RankingIndex.Advertisements.ONLY, null, 10)));
+        Assert.assertEquals(Arrays.asList("ad.example=1", "b.example=1", "c.example=1"), hosts(index.top(1, RankingIndex.Advertisements.INCLUDE, null, 10)));
+        Assert.assertEquals(Arrays.asList("c.example=2", "a.example=1"), hosts(index.top(2, RankingIndex.Advertisements.INCLUDE, "en", 2)));
+        Assert.assertTrue(index.top(10, RankingIndex.Advertisements.INCLUDE, null, 0).isEmpty());
+    }
+
+    @Test
+    public void topMatchesCounting() {
+        final Random random = new Random(7L);
+        final List<IndexedQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            final String[] uris = new String[20];
+            for (int j = 0; j < uris.length; j++) {
+                uris[j] = (random.nextInt(4) == 0 ? "$" : "") + "https://host-" + random.nextInt(50) + ".example/" + j;
+            }
+            queries.add(query((i % 2 == 0) ? "de" : "en", "query " + i, uris));
+        }
+        final RankingIndex built = RankingIndex.build(queries, 0L);
+
+        for (final RankingIndex.Advertisements advertisements : RankingIndex.Advertisements.values()) {
+            for (final String market : Arrays.asList(null, "de")) {
+                // queries per host with an accepted result up to rank 5
+                final Map<String, Set<IndexedQuery>> expected = new HashMap<>();
+                for (final IndexedQuery query : queries) {
+                    for (final Result result : query.getResults()) {
+                        if ((result.getRank() <= 5) && advertisements.accepts(result) && ((market == null) || market.equals(query.getMarket()))) {
+                            expected.computeIfAbsent(result.getUri().getHost(), host -> new HashSet<>()).add(query);
+                        }
+                    }
+                }
+
+                final List<RankingIndex.HostCount> top = built.top(5, advertisements, market, 10);
+                Assert.assertEquals(Math.min(10, expected.size()), top.size());
+                int previous = Integer.MAX_VALUE;
+                for (final RankingIndex.HostCount count : top) {
+                    Assert.assertEquals(expected.get(count.getHost()).size(), count.getCount());
+                    Assert.assertTrue(count.getCount() <= previous);
+                    previous = count.getCount();
+                }
+                // no host left out counts more than the last one taken
+                for (final Map.Entry<String, Set<IndexedQuery>> entry : expected.entrySet()) {
+                    if (!hosts(top).contains(entry.getKey() + "=" + entry.getValue().size())) {
+                        Assert.assertTrue(entry.getValue().size() <= previous);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// worker process for WorkQueueIT, usage: <base> <lease timeout> <worker> <task millis | crash>
+public final class QueueWorkerProcess {
+
+    public static void main(final String... args) throws Exception {
+        final File base = new File(args[0]);
+        final WorkQueue queue = new WorkQueue(base, Long.parseLong(args[1]));
+        final String worker = args[2];
+
+        if ("crash".equals(args[3])) {
+            // take a lease and die without completing or heartbeating it
+            if (queue.claim(worker) == null) {
+                System.exit(1);
+            }
+            Runtime.getRuntime().halt(0);
+        }
+
+        final long millis = Long.parseLong(args[3]);
+        final Path done = Files.createDirectories(base.toPath().resolve("done"));
+        final Worker.Task task = query -> {
+            // outlives the lease timeout, only the heartbeat keeps the lease
+            Thread.sleep(millis);
+            Files.write(done.resolve(query + "#" + worker), worker.getBytes(StandardCharsets.UTF_8));
+        };
+        new Worker(worker, queue, task).run();
+    }
+
+    private QueueWorkerProcess() {
+        // prevent instantiation
+    }
+}
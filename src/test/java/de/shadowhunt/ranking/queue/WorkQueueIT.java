@@ -0,0 +1,110 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// several worker processes share one queue directory like nodes on a network share
+public class WorkQueueIT {
+
+    // heartbeats (every third of the timeout) of freshly started jvms may be late on a loaded host
+    private static final long LEASE_TIMEOUT = 1_500L;
+
+    private static final int QUERIES = 12;
+
+    private static final long TASK_MILLIS = 2_000L;
+
+    private static final int WORKERS = 3;
+
+    private static Map<String, Integer> count(final Path folder) throws IOException {
+        final Map<String, Integer> counts = new HashMap<>();
+        try (Stream<Path> files = Files.list(folder)) {
+            files.forEach(file -> counts.merge(StringUtils.substringBeforeLast(file.getFileName().toString(), "#"), 1, Integer::sum));
+        }
+        return counts;
+    }
+
+    private static int size(final Path folder) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            return (int) files.count();
+        }
+    }
+
+    private static Process start(final File base, final String worker, final String task) throws IOException {
+        final String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        final ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), QueueWorkerProcess.class.getName(), //
+                base.getAbsolutePath(), String.valueOf(LEASE_TIMEOUT), worker, task);
+        return builder.inheritIO().start();
+    }
+
+    private static void waitFor(final Process process) throws InterruptedException {
+        Assert.assertTrue("worker did not finish", process.waitFor(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, process.exitValue());
+    }
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void workersShareQueue() throws Exception {
+        final File base = temp.getRoot();
+        final WorkQueue queue = new WorkQueue(base, LEASE_TIMEOUT);
+        for (int i = 0; i < QUERIES; i++) {
+            Assert.assertTrue(queue.enqueue("query " + i));
+        }
+
+        // a crashed node leaves a lease behind that must expire and be reclaimed
+        waitFor(start(base, "crashed", "crash"));
+        final Path root = base.toPath().resolve(".queue");
+        Assert.assertEquals(1, size(root.resolve("leased")));
+        Assert.assertEquals(QUERIES - 1, queue.pending());
+
+        final List<Process> workers = new ArrayList<>();
+        for (int i = 0; i < WORKERS; i++) {
+            workers.add(start(base, "worker-" + i, String.valueOf(TASK_MILLIS)));
+        }
+        for (final Process worker : workers) {
+            waitFor(worker);
+        }
+
+        // every query is processed exactly once, although each task outlives the lease timeout
+        final Map<String, Integer> processed = count(base.toPath().resolve("done"));
+        Assert.assertEquals(QUERIES, processed.size());
+        for (int i = 0; i < QUERIES; i++) {
+            Assert.assertEquals(Integer.valueOf(1), processed.get("query " + i));
+        }
+        Assert.assertEquals(0, queue.pending());
+        Assert.assertEquals(0, size(root.resolve("leased")));
+        Assert.assertEquals(0, size(root.resolve("failed")));
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.queue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkQueueTest {
+
+    @Rule
+    public final TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void claimAndComplete() throws IOException {
+        final WorkQueue queue = new WorkQueue(temp.getRoot(), 60_000L);
+        Assert.assertTrue(queue.enqueue("foo bar"));
+        Assert.assertEquals(1, queue.pending());
+
+        final Lease lease = queue.claim("worker");
+        Assert.assertNotNull(lease);
+        Assert.assertEquals("foo bar", lease.getQuery());
+        Assert.assertEquals(0, queue.pending());
+        Assert.assertNull(queue.claim("other"));
+
+        queue.complete(lease);
+        Assert.assertTrue(queue.enqueue("foo bar"));
+    }
+
+    @Test
+    public void enqueueLeasedQuery() throws IOException {
+        final WorkQueue queue = new WorkQueue(temp.getRoot(), 60_000L);
+        Assert.assertTrue(queue.enqueue("foo"));
+        Assert.assertNotNull(queue.claim("worker"));
+        Assert.assertFalse(queue.enqueue("foo"));
+    }
+
+    @Test
+    public void enqueueWithGlobCharacters() throws IOException {
+        final WorkQueue queue = new WorkQueue(temp.getRoot(), 60_000L);
+        Assert.assertTrue(queue.enqueue("ab"));
+        Assert.assertNotNull(queue.claim("worker"));
+
+        // must not match the leased "ab" as a pattern
+        Assert.assertTrue(queue.enqueue("a?"));
+        Assert.assertTrue(queue.enqueue("a*"));
+        // must not fail as an invalid pattern
+        Assert.assertTrue(queue.enqueue("[a"));
+        Assert.assertEquals(3, queue.pending());
+    }
+
+    @Test
+    public void reclaimExpired() throws IOException {
+        final File base = temp.getRoot();
+        final WorkQueue queue = new WorkQueue(base, 60_000L);
+        Assert.assertTrue(queue.enqueue("foo"));
+        final Lease lease = queue.claim("crashed");
+        Assert.assertNotNull(lease);
+        Assert.assertEquals(0, queue.reclaimExpired());
+
+        // same directory, but every lease is already expired
+        final WorkQueue expired = new WorkQueue(base, -1L);
+        Assert.assertEquals(1, expired.reclaimExpired());
+        Assert.assertEquals(1, expired.pending());
+        Assert.assertFalse(lease.heartbeat());
+        Assert.assertFalse(lease.isValid());
+
+        final Lease reclaimed = expired.claim("worker");
+        Assert.assertNotNull(reclaimed);
+        Assert.assertEquals("foo", reclaimed.getQuery());
+    }
+}
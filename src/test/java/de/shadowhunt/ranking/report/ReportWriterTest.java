@@ -0,0 +1,134 @@
+/**
+ * Google ranking analysis - Generates a report for google rankings
+ * Copyright © 2019 shadowhunt (dev@shadowhunt.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.shadowhunt.ranking.report;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+// ReportWriter must produce the same bytes as the String.format calls it replaced
+public class ReportWriterTest {
+
+    private static final String[] HOSTS = { "www.example.org", "bücher.example.de", "例え.テスト", "𝄞music.example", "" };
+
+    private static void assertGolden(final Charset charset, final String pattern, final Object... args) {
+        final String expected = String.format(Locale.ROOT, pattern, args);
+        Assert.assertArrayEquals(pattern, expected.getBytes(charset), render(charset, 1, pattern, args));
+    }
+
+    private static void assertGolden(final String pattern, final Object... args) {
+        assertGolden(StandardCharsets.UTF_8, pattern, args);
+    }
+
+    private static byte[] render(final Charset charset, final int lines, final String pattern, final Object... args) {
+        final Layout layout = Layout.compile(pattern);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ReportWriter writer = new ReportWriter(Channels.newChannel(output), charset)) {
+            for (int i = 0; i < lines; i++) {
+                writer.format(layout);
+                for (final Object arg : args) {
+                    if (arg instanceof Integer) {
+                        writer.arg(((Integer) arg).intValue());
+                    } else if (arg instanceof CharSequence) {
+                        writer.arg((CharSequence) arg);
+                    } else {
+                        writer.arg(arg);
+                    }
+                }
+            }
+        }
+        return output.toByteArray();
+    }
+
+    @Test
+    public void integers() {
+        final int[] values = { 0, 7, 42, 123, 1000, -5, -123, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        for (final int value : values) {
+            assertGolden("%d", value);
+            assertGolden("[%02d]", value);
+            assertGolden("%03d:", value);
+            assertGolden("%05d", value);
+            assertGolden("%7d|", value);
+            assertGolden("%-6d|", value);
+            assertGolden("%6d%%", value);
+        }
+    }
+
+    @Test
+    public void largeOutput() {
+        // spans many char buffer flushes with multi-byte characters at the buffer boundaries
+        final String pattern = "%s %-60s %6d%% %5d%n";
+        final int lines = 20_000;
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            expected.append(String.format(Locale.ROOT, pattern, "*", HOSTS[2], 42, -7));
+        }
+        final byte[] actual = render(StandardCharsets.UTF_8, lines, pattern, "*", HOSTS[2], 42, -7);
+        Assert.assertArrayEquals(expected.toString().getBytes(StandardCharsets.UTF_8), actual);
+    }
+
+    @Test
+    public void literals() {
+        assertGolden("  =================================== Page %02d ===================================%n", 3);
+        assertGolden("100%% done%n%n");
+        assertGolden("%n");
+        assertGolden("no arguments");
+    }
+
+    @Test
+    public void mixedLines() {
+        for (final String host : HOSTS) {
+            assertGolden("%s %03d: ADV %s%n", "*", 9, host);
+            assertGolden("   [%02d] %-60s %7d %7d   %d.%03d%n", 1, host, 12, 3, 0, 250);
+            assertGolden("%s %-60s %6d%% %5d %5d %6d %4d%%%n", " ", host, 100, 1, 12, -3, 50);
+            assertGolden("         [%02d] %s (%d results)%n", 2, host, 87);
+        }
+    }
+
+    @Test
+    public void otherCharsets() {
+        for (final String host : HOSTS) {
+            assertGolden(StandardCharsets.UTF_16, "%-20s|%n", host);
+            // unmappable characters are replaced like String.getBytes does
+            assertGolden(StandardCharsets.ISO_8859_1, "%-20s|%n", host);
+        }
+    }
+
+    @Test
+    public void strings() {
+        for (final String host : HOSTS) {
+            assertGolden("%s", host);
+            assertGolden("%-60s|", host);
+            assertGolden("%-10s|", host);
+            assertGolden("%7s|", host);
+            assertGolden("    - %s%n", host);
+        }
+        assertGolden("%-3s|", "longer than the width");
+        assertGolden("%s %s", Integer.valueOf(5), Boolean.TRUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedConversion() {
+        Layout.compile("%x");
+    }
+}